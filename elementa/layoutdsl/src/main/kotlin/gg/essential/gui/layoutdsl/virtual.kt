@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.layoutdsl
+
+import gg.essential.elementa.UIComponent
+import gg.essential.elementa.components.ScrollComponent
+import gg.essential.elementa.components.UIContainer
+import gg.essential.elementa.components.Window
+import gg.essential.elementa.constraints.ConstraintType
+import gg.essential.elementa.constraints.HeightConstraint
+import gg.essential.elementa.constraints.RelativeConstraint
+import gg.essential.elementa.constraints.resolution.ConstraintVisitor
+import gg.essential.elementa.dsl.pixels
+import gg.essential.gui.elementa.state.v2.ListState
+import gg.essential.gui.elementa.state.v2.State
+import gg.essential.gui.elementa.state.v2.effect
+import gg.essential.universal.UMatrixStack
+import kotlin.math.ceil
+import kotlin.math.floor
+
+/**
+ * A vertical list of rows of fixed [rowHeight], of which only those currently visible within the enclosing
+ * [ScrollComponent] (plus [overscan] rows above and below) are built and part of the component tree.
+ *
+ * See [virtualGrid] for details.
+ */
+fun <T> LayoutScope.virtualList(
+    items: ListState<T>,
+    rowHeight: Float,
+    spacing: Float = 0f,
+    modifier: Modifier = Modifier.fillWidth(),
+    overscan: Int = 5,
+    anchorScroll: Boolean = true,
+    block: LayoutScope.(T) -> Unit,
+): VirtualGrid<T> {
+    val cellLayout = CellLayout(1, null, rowHeight)
+    return VirtualGrid({ cellLayout }, 0f, spacing, overscan, anchorScroll, block).also { grid ->
+        grid(modifier)
+        effect(stateScope) { grid.setItems(items()) }
+        grid.automaticComponentName("virtualList")
+    }
+}
+
+/**
+ * A grid of cells of fixed size, filled left to right, top to bottom, with as many columns as fit into its width.
+ *
+ * Unlike [LayoutScope.forEach], only the rows currently visible within the enclosing [ScrollComponent] (plus [overscan]
+ * rows above and below) are built and part of the component tree, so even very long lists only cost as much layout and
+ * hit-testing as is actually on screen. Cells which scroll out of view are kept around for a while and re-used if their
+ * item scrolls back into view, so scrolling back and forth does not constantly re-build them.
+ *
+ * Because cells are built and discarded as the user scrolls, their content must not hold on to anything which it does
+ * not clean up itself (same as with an uncached [LayoutScope.forEach]), and they cannot be found via the component tree
+ * while off-screen. Use [VirtualGrid.offsetOf] to scroll to a specific item instead.
+ *
+ * Items are used as keys for re-using cells and must therefore be distinct and usable as keys in a HashMap.
+ *
+ * If [anchorScroll] is set, the enclosing [ScrollComponent] is adjusted when items are inserted or removed before the
+ * first visible item, so that item stays in place instead of the content jumping around.
+ */
+fun <T> LayoutScope.virtualGrid(
+    items: ListState<T>,
+    cellWidth: Float,
+    cellHeight: Float,
+    xSpacing: Float = 0f,
+    ySpacing: Float = 0f,
+    modifier: Modifier = Modifier.fillWidth(),
+    overscan: Int = 2,
+    anchorScroll: Boolean = false,
+    block: LayoutScope.(T) -> Unit,
+): VirtualGrid<T> {
+    val computeCellLayout = { gridWidth: Float ->
+        val columns = floor((gridWidth + xSpacing) / (cellWidth + xSpacing)).toInt().coerceAtLeast(1)
+        CellLayout(columns, cellWidth, cellHeight)
+    }
+    return VirtualGrid(computeCellLayout, xSpacing, ySpacing, overscan, anchorScroll, block).also { grid ->
+        grid(modifier)
+        effect(stateScope) { grid.setItems(items()) }
+        grid.automaticComponentName("virtualGrid")
+    }
+}
+
+/**
+ * Like the other [virtualGrid] but with a fixed number of [columns] which evenly share the width of the grid, and cells
+ * whose height follows from their width and [aspectRatio] (height / width), so the cells grow and shrink with the grid.
+ */
+fun <T> LayoutScope.virtualGrid(
+    items: ListState<T>,
+    columns: State<Int>,
+    aspectRatio: Float,
+    xSpacing: Float = 0f,
+    ySpacing: Float = 0f,
+    modifier: Modifier = Modifier.fillWidth(),
+    overscan: Int = 2,
+    anchorScroll: Boolean = false,
+    block: LayoutScope.(T) -> Unit,
+): VirtualGrid<T> {
+    val computeCellLayout = { gridWidth: Float ->
+        val columnCount = columns.getUntracked().coerceAtLeast(1)
+        val cellWidth = ((gridWidth - xSpacing * (columnCount - 1)) / columnCount).coerceAtLeast(0f)
+        CellLayout(columnCount, cellWidth, cellWidth * aspectRatio)
+    }
+    return VirtualGrid(computeCellLayout, xSpacing, ySpacing, overscan, anchorScroll, block).also { grid ->
+        grid(modifier)
+        effect(stateScope) { grid.setItems(items()) }
+        grid.automaticComponentName("virtualGrid")
+    }
+}
+
+/** Number of columns and size of each cell of a [VirtualGrid], a `null` [width] means the cell spans the full width. */
+internal data class CellLayout(val columns: Int, val width: Float?, val height: Float)
+
+class VirtualGrid<T> internal constructor(
+    /** Computes the [CellLayout] from the current width of the grid. */
+    private val computeCellLayout: (gridWidth: Float) -> CellLayout,
+    private val xSpacing: Float,
+    private val ySpacing: Float,
+    private val overscan: Int,
+    private val anchorScroll: Boolean,
+    private val block: LayoutScope.(T) -> Unit,
+) : UIContainer() {
+    private var items: List<T> = emptyList()
+
+    /** Cells currently in the component tree, by item. */
+    private val active = mutableMapOf<T, UIComponent>()
+
+    /** Cells which have recently left the visible area, least recently used first. */
+    private val pool = LinkedHashMap<T, UIComponent>(16, 0.75f, true)
+
+    private var dirty = true
+    private var visibleIndices = IntRange.EMPTY
+    private var laidOutCells: CellLayout? = null
+
+    init {
+        setHeight(GridHeightConstraint())
+    }
+
+    internal fun setItems(newItems: List<T>) {
+        val scroller = if (anchorScroll) findScroller() else null
+        val anchor = if (scroller != null) items.getOrNull(firstVisibleIndex(scroller)) else null
+        val anchorOffset = anchor?.let { offsetOf(items.indexOf(it)) }
+
+        items = newItems
+        dirty = true
+        pool.keys.retainAll(newItems.toSet())
+
+        if (scroller != null && anchor != null && anchorOffset != null) {
+            val newIndex = newItems.indexOf(anchor)
+            if (newIndex >= 0) {
+                val delta = offsetOf(newIndex) - anchorOffset
+                if (delta != 0f) {
+                    scroller.scrollTo(verticalOffset = scroller.verticalOffset - delta, smoothScroll = false)
+                }
+            }
+        }
+    }
+
+    /** Vertical offset of the cell of the item at [index] relative to the top of this grid. */
+    fun offsetOf(index: Int): Float = offsetOf(index, cellLayout())
+
+    /** Vertical offset of the cell of [item] relative to the top of this grid, or `null` if it is not in this grid. */
+    fun offsetOfItem(item: T): Float? = items.indexOf(item).takeIf { it >= 0 }?.let { offsetOf(it) }
+
+    private fun offsetOf(index: Int, cells: CellLayout): Float = (index / cells.columns) * (cells.height + ySpacing)
+
+    private fun cellLayout(): CellLayout = computeCellLayout(getWidth())
+
+    private fun findScroller(): ScrollComponent? {
+        var component: UIComponent = this
+        while (component.hasParent && component !is Window) {
+            component = component.parent
+            if (component is ScrollComponent) return component
+        }
+        return null
+    }
+
+    /** The component whose bounds determine what is visible, i.e. the enclosing scroll container or the window. */
+    private fun findViewport(): UIComponent? {
+        findScroller()?.let { return it }
+        var component: UIComponent = this
+        while (component.hasParent && component !is Window) {
+            component = component.parent
+        }
+        return component as? Window
+    }
+
+    private fun firstVisibleIndex(scroller: ScrollComponent): Int {
+        val cells = cellLayout()
+        val row = floor((scroller.getTop() - getTop()) / (cells.height + ySpacing)).toInt().coerceAtLeast(0)
+        return row * cells.columns
+    }
+
+    private fun computeVisibleIndices(cells: CellLayout): IntRange {
+        if (items.isEmpty()) return IntRange.EMPTY
+        val viewport = findViewport() ?: return IntRange.EMPTY
+
+        val columns = cells.columns
+        val rowStride = cells.height + ySpacing
+        if (rowStride <= 0f) return IntRange.EMPTY
+        val firstRow = floor((viewport.getTop() - getTop()) / rowStride).toInt() - overscan
+        val lastRow = ceil((viewport.getBottom() - getTop()) / rowStride).toInt() + overscan
+        val first = (firstRow * columns).coerceAtLeast(0)
+        val last = ((lastRow + 1) * columns - 1).coerceAtMost(items.size - 1)
+        return first..last
+    }
+
+    private fun update() {
+        val cells = cellLayout()
+        val indices = computeVisibleIndices(cells)
+        if (!dirty && indices == visibleIndices && cells == laidOutCells) {
+            return
+        }
+        dirty = false
+        visibleIndices = indices
+        laidOutCells = cells
+
+        val previous = active.toMap()
+        active.clear()
+        for (index in indices) {
+            val item = items[index]
+            val cell = previous[item] ?: pool.remove(item) ?: buildCell(item)
+            // Cells may have been built (or pooled) with a different cell size
+            if (cells.width != null) cell.setWidth(cells.width.pixels) else cell.setWidth(RelativeConstraint())
+            cell.setHeight(cells.height.pixels)
+            cell.setX(((index % cells.columns) * ((cells.width ?: 0f) + xSpacing)).pixels)
+            cell.setY(offsetOf(index, cells).pixels)
+            active[item] = cell
+        }
+
+        for ((item, cell) in previous) {
+            if (item !in active) {
+                removeChild(cell)
+                pool[item] = cell
+            }
+        }
+        for (cell in active.values) {
+            if (!cell.hasParent || cell.parent != this) {
+                addChild(cell)
+            }
+        }
+
+        val poolSize = (indices.count() * 2).coerceAtLeast(MIN_POOL_SIZE)
+        val iterator = pool.values.iterator()
+        while (pool.size > poolSize && iterator.hasNext()) {
+            iterator.next()
+            iterator.remove()
+        }
+    }
+
+    private fun buildCell(item: T): UIComponent {
+        return UIContainer().apply {
+            layoutAsBox { block(item) }
+        }
+    }
+
+    override fun animationFrame() {
+        update()
+        super.animationFrame()
+    }
+
+    override fun draw(matrixStack: UMatrixStack) {
+        update()
+        super.draw(matrixStack)
+    }
+
+    private inner class GridHeightConstraint : HeightConstraint {
+        override var cachedValue = 0f
+        override var recalculate = true
+        override var constrainTo: UIComponent? = null
+
+        override fun getHeightImpl(component: UIComponent): Float {
+            val cells = cellLayout()
+            val rows = (items.size + cells.columns - 1) / cells.columns
+            return (rows * (cells.height + ySpacing) - ySpacing).coerceAtLeast(0f)
+        }
+
+        override fun visitImpl(visitor: ConstraintVisitor, type: ConstraintType) {
+        }
+    }
+
+    private companion object {
+        const val MIN_POOL_SIZE = 32
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.elementa.state.v2.collections
+
+import kotlin.random.Random
+
+/**
+ * A sequence of boolean flags which supports inserting and removing flags at arbitrary positions, as well as counting
+ * the number of set flags before a given position, all in `O(log n)` expected time.
+ *
+ * Used to map indices of a source list to indices in a filtered version of that list, where a plain list of indices
+ * would require updating all following indices whenever an element is added or removed.
+ *
+ * Implemented as an implicit treap, i.e. a randomized binary search tree keyed by position.
+ */
+internal class IndexedFlags {
+    private var root: Node? = null
+
+    // Only the distribution matters, so a fixed seed is fine and makes any issues reproducible
+    private val random = Random(0)
+
+    val size: Int
+        get() = root.size
+
+    /** Inserts [flag] at [index] and returns the number of set flags before it. */
+    fun insert(index: Int, flag: Boolean): Int {
+        val (left, right) = split(root, index)
+        val before = left.setCount
+        root = merge(merge(left, Node(flag, random.nextInt())), right)
+        return before
+    }
+
+    /** Removes the flag at [index] and returns the number of set flags before it if it was set, or `-1` if it was not. */
+    fun removeAt(index: Int): Int {
+        val (left, rest) = split(root, index)
+        val (node, right) = split(rest, 1)
+        root = merge(left, right)
+        return if (node!!.flag) left.setCount else -1
+    }
+
+    fun clear() {
+        root = null
+    }
+
+    /** Splits [node] into one tree with the first [count] flags and one with the remaining flags. */
+    private fun split(node: Node?, count: Int): Pair<Node?, Node?> {
+        if (node == null) {
+            return Pair(null, null)
+        }
+        return if (node.left.size < count) {
+            val (left, right) = split(node.right, count - node.left.size - 1)
+            node.right = left
+            node.update()
+            Pair(node, right)
+        } else {
+            val (left, right) = split(node.left, count)
+            node.left = right
+            node.update()
+            Pair(left, node)
+        }
+    }
+
+    private fun merge(left: Node?, right: Node?): Node? {
+        if (left == null) return right
+        if (right == null) return left
+        return if (left.priority > right.priority) {
+            left.right = merge(left.right, right)
+            left.update()
+            left
+        } else {
+            right.left = merge(left, right.left)
+            right.update()
+            right
+        }
+    }
+
+    private class Node(val flag: Boolean, val priority: Int) {
+        var left: Node? = null
+        var right: Node? = null
+        var size = 1
+        var setCount = if (flag) 1 else 0
+
+        fun update() {
+            size = left.size + 1 + right.size
+            setCount = left.setCount + (if (flag) 1 else 0) + right.setCount
+        }
+    }
+
+    private companion object {
+        val Node?.size: Int
+            get() = this?.size ?: 0
+
+        val Node?.setCount: Int
+            get() = this?.setCount ?: 0
+    }
+}
@@ -91,6 +91,13 @@ class MutableTrackedList<E> private constructor(
             return other.nextDiff!!.asChangeSequence()
         }
 
+        // If there have been many more changes than there are elements, replaying all of them would be more expensive
+        // (for us and for whoever consumes the changes) than just comparing the two lists.
+        val (older, newer) = if (other.generation < this.generation) Pair(other, this) else Pair(this, other)
+        if (newer.generation - older.generation > newer.size + MAX_EXCESS_CHANGES) {
+            return TrackedList.Change.estimate(other, this).asSequence()
+        }
+
         if (other.generation < this.generation) {
             // Regular diff
             val generations = generateSequence(other) { if (it == this) null else it.nextList }.toMutableList()
@@ -225,4 +232,9 @@ class MutableTrackedList<E> private constructor(
                 diffs.asReversed().asSequence().flatMap { it.asInverseChangeSequence() }
         }
     }
+
+    private companion object {
+        /** How many more generations than elements may be between two lists before we compare them directly. */
+        const val MAX_EXCESS_CHANGES = 16
+    }
 }
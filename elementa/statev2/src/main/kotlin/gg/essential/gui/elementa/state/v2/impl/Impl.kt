@@ -24,6 +24,7 @@ internal interface Impl {
     fun <T> mutableState(value: T): MutableState<T>
     fun <T> memo(func: Observer.() -> T): State<T>
     fun effect(referenceHolder: ReferenceHolder, func: Observer.() -> Unit): () -> Unit
+    fun <T> batchUpdates(block: () -> T): T = block()
 
     fun <T> stateDelegatingTo(state: State<T>): DelegatingState<T> =
         object : DelegatingState<T> {
@@ -59,6 +59,7 @@ internal object MarkThenPullImpl : Impl {
         }
     }
 
+    override fun <T> batchUpdates(block: () -> T): T = Update.get().batch(block)
 }
 
 private enum class NodeKind {
@@ -283,13 +284,24 @@ private class Node<T>(
 private class Update {
     private var queue: MutableList<Node<*>> = mutableListOf()
     private var processing: Boolean = false
+    private var batchDepth: Int = 0
 
     fun queueNode(node: Node<*>) {
         queue.add(node)
     }
 
+    fun <T> batch(block: () -> T): T {
+        batchDepth++
+        try {
+            return block()
+        } finally {
+            batchDepth--
+            flush()
+        }
+    }
+
     fun flush() {
-        if (processing || queue.isEmpty()) {
+        if (processing || batchDepth > 0 || queue.isEmpty()) {
             return
         }
 
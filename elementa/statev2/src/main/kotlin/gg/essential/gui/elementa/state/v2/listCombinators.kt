@@ -11,6 +11,7 @@
  */
 package gg.essential.gui.elementa.state.v2
 
+import gg.essential.gui.elementa.state.v2.collections.IndexedFlags
 import gg.essential.gui.elementa.state.v2.collections.MutableTrackedList
 import gg.essential.gui.elementa.state.v2.collections.MutableTrackedSet
 import gg.essential.gui.elementa.state.v2.collections.TrackedList
@@ -47,68 +48,39 @@ fun <T> ListState<T>.toSet(): SetState<T> {
 
 // mapList { it.filter(filter) }
 fun <T> ListState<T>.filter(filter: (T) -> Boolean): ListState<T> {
-    val indices = mutableListOf<Int>()
+    // One flag per element in the source list, set if it passed the filter, so we can quickly map indices
+    val flags = IndexedFlags()
     return mapChange({ list ->
         MutableTrackedList(mutableListOf<T>().also { filteredList ->
             for (elem in list) {
-                if (filter(elem)) {
-                    indices.add(filteredList.size)
+                val passed = filter(elem)
+                flags.insert(flags.size, passed)
+                if (passed) {
                     filteredList.add(elem)
-                } else {
-                    indices.add(-1)
                 }
             }
         })
     }) { list, change ->
         when (change) {
             is TrackedList.Add -> {
-                if (filter(change.element.value)) {
-                    val mappedIndex = if (change.element.index == indices.size) {
-                        // Fast path, add to end
-                        list.size
-                    } else {
-                        // Slow path, to find the index of the newly added element, we need to find the index
-                        // of the previous (non-filtered) element
-                        var mappedIndex = 0
-                        for (i in (0 until change.element.index).reversed()) {
-                            val index = indices[i]
-                            if (index != -1) {
-                                mappedIndex = index + 1
-                                break
-                            }
-                        }
-                        // And then also increment the index of all elements that are after it
-                        for (i in change.element.index .. indices.lastIndex) {
-                            val index = indices[i]
-                            if (index != -1) {
-                                indices[i] = index + 1
-                            }
-                        }
-                        mappedIndex
-                    }
-                    indices.add(change.element.index, mappedIndex)
+                val passed = filter(change.element.value)
+                val mappedIndex = flags.insert(change.element.index, passed)
+                if (passed) {
                     list.add(mappedIndex, change.element.value)
                 } else {
-                    indices.add(change.element.index, -1)
                     list
                 }
             }
             is TrackedList.Remove -> {
-                val mappedIndex = indices.removeAt(change.element.index)
+                val mappedIndex = flags.removeAt(change.element.index)
                 if (mappedIndex != -1) {
-                    for (i in change.element.index .. indices.lastIndex) {
-                        val index = indices[i]
-                        if (index != -1) {
-                            indices[i] = index - 1
-                        }
-                    }
                     list.removeAt(mappedIndex)
                 } else {
                     list
                 }
             }
             is TrackedList.Clear -> {
-                indices.clear()
+                flags.clear()
                 list.clear()
             }
         }
@@ -126,6 +126,19 @@ fun <T> State<T>.memo(): State<T> = memo inner@{ this@memo() }
  */
 fun effect(referenceHolder: ReferenceHolder, func: Observer.() -> Unit): () -> Unit = impl.effect(referenceHolder, func)
 
+/**
+ * Runs the given [block] and delays updating any [effect]s affected by [MutableState.set] calls within it until the
+ * block returns, at which point all of them are updated together.
+ *
+ * This is useful when making many changes at once (e.g. adding many elements to a list one by one, or updating a
+ * bunch of related states), because each affected [effect] (and every [memo] it depends on) will then only be
+ * re-evaluated once with the final values, instead of once for every single change.
+ * [memo]s which are explicitly [get][State.getUntracked] within the block will still see the latest values.
+ *
+ * Batches may be nested, effects are only updated once the outermost batch ends.
+ */
+fun <T> batchUpdates(block: () -> T): T = impl.batchUpdates(block)
+
 /**
  * Runs the given function [func] whenever the value of `this` State changes.
  *
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.elementa.state.v2
+
+import gg.essential.elementa.state.v2.ReferenceHolder
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class BatchUpdatesTest {
+    @Test
+    fun testEffectsRunOncePerBatch() {
+        val a = mutableStateOf(0)
+        val b = mutableStateOf(0)
+        val seen = mutableListOf<Pair<Int, Int>>()
+        val cleanup = effect(ReferenceHolder.Weak) {
+            seen.add(a() to b())
+        }
+        assertEquals(listOf(0 to 0), seen)
+
+        batchUpdates {
+            a.set(1)
+            b.set(1)
+            a.set(2)
+            batchUpdates {
+                b.set(2)
+            }
+            // Nested batch must not flush yet
+            assertEquals(listOf(0 to 0), seen)
+        }
+        assertEquals(listOf(0 to 0, 2 to 2), seen)
+
+        cleanup()
+    }
+
+    @Test
+    fun testMemoSeesLatestValueWithinBatch() {
+        val a = mutableStateOf(1)
+        val doubled = memo { a() * 2 }
+        batchUpdates {
+            a.set(5)
+            assertEquals(10, doubled.getUntracked())
+        }
+    }
+
+    @Test
+    fun testFilterWithBatchedChanges() {
+        val random = Random(42)
+        val list = mutableListStateOf<Int>()
+        val filtered = list.filter { it % 3 == 0 }
+        var effectRuns = 0
+        val cleanup = effect(ReferenceHolder.Weak) {
+            filtered()
+            effectRuns++
+        }
+
+        repeat(100) {
+            batchUpdates {
+                repeat(20) {
+                    val current = list.getUntracked()
+                    if (current.isEmpty() || random.nextBoolean()) {
+                        list.add(random.nextInt(current.size + 1), random.nextInt(100))
+                    } else {
+                        list.removeAt(random.nextInt(current.size))
+                    }
+                }
+            }
+            assertEquals(list.getUntracked().filter { it % 3 == 0 }, filtered.getUntracked().toList())
+        }
+        assertTrue(effectRuns <= 101)
+
+        cleanup()
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.elementa.state.v2.collections
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class IndexedFlagsTest {
+    @Test
+    fun testAgainstList() {
+        val random = Random(42)
+        val flags = IndexedFlags()
+        val expected = mutableListOf<Boolean>()
+
+        repeat(10000) {
+            if (expected.isEmpty() || random.nextInt(3) != 0) {
+                val index = random.nextInt(expected.size + 1)
+                val flag = random.nextBoolean()
+                assertEquals(expected.subList(0, index).count { it }, flags.insert(index, flag))
+                expected.add(index, flag)
+            } else {
+                val index = random.nextInt(expected.size)
+                val before = expected.subList(0, index).count { it }
+                assertEquals(if (expected[index]) before else -1, flags.removeAt(index))
+                expected.removeAt(index)
+            }
+            assertEquals(expected.size, flags.size)
+        }
+
+        flags.clear()
+        assertEquals(0, flags.size)
+    }
+}
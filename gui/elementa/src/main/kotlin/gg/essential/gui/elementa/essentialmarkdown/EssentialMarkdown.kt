@@ -76,6 +76,9 @@ class EssentialMarkdown(
 
     private var layoutFailed = false
 
+    /** Incremented on every [reparse], so results of outdated background parses can be discarded. */
+    private var parseGeneration = 0
+
     init {
         onLeftClick {
             val xShift = getLeft() - baseX
@@ -137,9 +140,36 @@ class EssentialMarkdown(
      * Parses the text into a markdown tree. This is called everytime
      * that the text of this component changes, and is always followed
      * by a call to layout().
+     *
+     * Long texts which have not been parsed before are parsed on a
+     * background thread, in which case the previous tree stays in place
+     * until parsing is complete, at which point another layout() happens.
      */
     private fun reparse() {
-        drawables.setDrawables(MarkdownRenderer(text.get(), this, config).render())
+        val generation = ++parseGeneration
+        val text = text.get()
+        val config = config
+
+        val cached = ParsedMarkdownCache.get(text, config)
+        if (cached != null || text.length <= SYNC_PARSE_MAX_LENGTH) {
+            val parsed = cached ?: ParsedMarkdownCache.parse(text, config)
+            drawables.setDrawables(MarkdownRenderer(text, this, config).render(parsed))
+            return
+        }
+
+        ParsedMarkdownCache.parseAsync(text, config).whenComplete { parsed, error ->
+            Window.enqueueRenderOperation {
+                if (generation != parseGeneration) {
+                    // Text or config has changed in the meantime
+                } else if (parsed == null) {
+                    LogManager.getLogger().error("Failed to parse markdown", error)
+                    layoutFailed = true
+                } else {
+                    drawables.setDrawables(MarkdownRenderer(text, this, config).render(parsed))
+                    layout()
+                }
+            }
+        }
     }
 
     /**
@@ -284,5 +314,11 @@ class EssentialMarkdown(
     companion object {
         // TODO: Remove
         const val DEBUG = false
+
+        /**
+         * Texts up to this length are parsed immediately, so short texts
+         * (e.g. most chat messages) never show up empty for a frame.
+         */
+        private const val SYNC_PARSE_MAX_LENGTH = 1024
     }
 }
@@ -24,19 +24,50 @@ import java.awt.Color
 import java.net.URL
 
 class MarkdownRenderer @JvmOverloads constructor(
-    text: String,
+    private val text: String,
     md: EssentialMarkdown,
-    config: MarkdownConfig = MarkdownConfig(),
+    private val config: MarkdownConfig = MarkdownConfig(),
 ) {
 
-    private val impl = MarkdownRendererImpl(text, md, config)
+    private val impl = MarkdownRendererImpl(md, config)
+
+    fun render(): DrawableList = render(parse(text, config))
+
+    /**
+     * Like [render] but builds the drawables from the given, previously [parse]d, document instead of parsing the
+     * text again. The document must have been parsed with the same [parseOptions] as this renderer's config.
+     */
+    internal fun render(parsed: ParsedMarkdown): DrawableList = impl.render(parsed.document)
+
+    internal companion object {
+        /**
+         * Parses the given text into a document which can later be turned into drawables via [render].
+         * Does not touch any drawables or components and may therefore be called from any thread.
+         */
+        fun parse(text: String, config: MarkdownConfig): ParsedMarkdown {
+            return ParsedMarkdown(text, parseOptions(config), MarkdownRendererImpl.parse(text, config))
+        }
 
-    fun render(): DrawableList = impl.render()
+        /** Bit set of all [MarkdownConfig] values which affect [parse]. */
+        fun parseOptions(config: MarkdownConfig): Int {
+            var options = 0
+            if (config.headerConfig.enabled) options = options or 1
+            if (config.codeBlockConfig.enabled) options = options or 2
+            if (config.blockquoteConfig.enabled) options = options or 4
+            if (config.listConfig.enabled) options = options or 8
+            return options
+        }
+    }
 }
 
+/**
+ * The result of [MarkdownRenderer.parse].
+ * Must not be modified once created, so it can be shared between all components displaying the same text.
+ */
+internal class ParsedMarkdown(val text: String, val options: Int, internal val document: Node)
+
 // Separate as to not expose the CommonMark implementation detail
 private class MarkdownRendererImpl(
-    private val text: String,
     private val md: EssentialMarkdown,
     private val config: MarkdownConfig,
 ) : AbstractVisitor() {
@@ -50,30 +81,7 @@ private class MarkdownRendererImpl(
         marks.add(drawables.size)
     }
 
-    fun render(): DrawableList {
-        val enabledBlockTypes = mutableSetOf<Class<out Block>>()
-        with(enabledBlockTypes) {
-            if (config.headerConfig.enabled) add(Heading::class.java)
-            if (config.codeBlockConfig.enabled) {
-                add(FencedCodeBlock::class.java)
-                add(IndentedCodeBlock::class.java)
-            }
-            if (config.blockquoteConfig.enabled) add(BlockQuote::class.java)
-            if (config.listConfig.enabled) add(ListBlock::class.java)
-        }
-
-        // This is a bit of a workaround for the fact that a delimiter processor extension (see ColorAttributeDelimiterProcessor)
-        // cannot share the same opening/closing characters as another delimiter processor extension.
-        val replacedText = text
-            .replace(OPENING_COLOR_TAG_REGEX, "{$1}")
-            .replace(CLOSING_COLOR_TAG_REGEX, "{$1}")
-
-        val document = Parser.builder()
-            .extensions(extensions)
-            .enabledBlockTypes(enabledBlockTypes)
-            .build()
-            .parse(replacedText)
-
+    fun render(document: Node): DrawableList {
         document.accept(this)
         return DrawableList(md, drawables)
     }
@@ -271,6 +279,31 @@ private class MarkdownRendererImpl(
     }
 
     companion object {
+        fun parse(text: String, config: MarkdownConfig): Node {
+            val enabledBlockTypes = mutableSetOf<Class<out Block>>()
+            with(enabledBlockTypes) {
+                if (config.headerConfig.enabled) add(Heading::class.java)
+                if (config.codeBlockConfig.enabled) {
+                    add(FencedCodeBlock::class.java)
+                    add(IndentedCodeBlock::class.java)
+                }
+                if (config.blockquoteConfig.enabled) add(BlockQuote::class.java)
+                if (config.listConfig.enabled) add(ListBlock::class.java)
+            }
+
+            // This is a bit of a workaround for the fact that a delimiter processor extension (see ColorAttributeDelimiterProcessor)
+            // cannot share the same opening/closing characters as another delimiter processor extension.
+            val replacedText = text
+                .replace(OPENING_COLOR_TAG_REGEX, "{$1}")
+                .replace(CLOSING_COLOR_TAG_REGEX, "{$1}")
+
+            return Parser.builder()
+                .extensions(extensions)
+                .enabledBlockTypes(enabledBlockTypes)
+                .build()
+                .parse(replacedText)
+        }
+
         val OPENING_COLOR_TAG_REGEX = "<(color:#[0-9a-fA-F]{6,})>".toRegex()
         val CLOSING_COLOR_TAG_REGEX = "</(color)>".toRegex()
 
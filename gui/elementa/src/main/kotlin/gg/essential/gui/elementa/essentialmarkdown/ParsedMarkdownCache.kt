@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.elementa.essentialmarkdown
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * Shares [ParsedMarkdown] documents between all [EssentialMarkdown] components, so the same text (e.g. a chat message
+ * which is re-created every time the chat is opened) only needs to be parsed once, and parses texts which are not yet
+ * cached on a background thread.
+ */
+internal object ParsedMarkdownCache {
+    private const val CACHE_SIZE = 512
+
+    private val executor: Executor = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "Essential Markdown Parser").apply { isDaemon = true }
+    }
+
+    private val cache = object : LinkedHashMap<Key, ParsedMarkdown>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, ParsedMarkdown>?): Boolean = size > CACHE_SIZE
+    }
+
+    /** Returns the cached document for the given text and config, or `null` if it has not yet been parsed. */
+    fun get(text: String, config: MarkdownConfig): ParsedMarkdown? {
+        val key = Key(text, MarkdownRenderer.parseOptions(config))
+        return synchronized(cache) { cache[key] }
+    }
+
+    /** Parses the given text on the current thread, or returns the cached document if it has already been parsed. */
+    fun parse(text: String, config: MarkdownConfig): ParsedMarkdown {
+        return get(text, config) ?: MarkdownRenderer.parse(text, config).also { put(it) }
+    }
+
+    /** Parses the given text on a background thread, or returns the cached document if it has already been parsed. */
+    fun parseAsync(text: String, config: MarkdownConfig): CompletableFuture<ParsedMarkdown> {
+        get(text, config)?.let { return CompletableFuture.completedFuture(it) }
+        return CompletableFuture.supplyAsync({ parse(text, config) }, executor)
+    }
+
+    private fun put(parsed: ParsedMarkdown) {
+        synchronized(cache) {
+            cache[Key(parsed.text, parsed.options)] = parsed
+        }
+    }
+
+    private data class Key(val text: String, val options: Int)
+}
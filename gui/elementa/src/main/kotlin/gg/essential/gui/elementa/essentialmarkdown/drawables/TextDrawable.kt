@@ -70,7 +70,22 @@ class TextDrawable(
                 formattedText.substring(styleChars, formattedText.length).trimStart()
     }
 
-    fun width() = formattedText.width(scaleModifier) + if (style.isCode) {
+    // Measuring text is relatively expensive and ParagraphDrawable asks for the width of the same drawable repeatedly
+    // during layout, so we remember the last result until either the text or the scale changes.
+    private var measuredText: String? = null
+    private var measuredScale = 0f
+    private var measuredWidth = 0f
+
+    private fun textWidth(): Float {
+        if (measuredText !== formattedText || measuredScale != scaleModifier) {
+            measuredWidth = formattedText.width(scaleModifier)
+            measuredText = formattedText
+            measuredScale = scaleModifier
+        }
+        return measuredWidth
+    }
+
+    fun width() = textWidth() + if (style.isCode) {
         config.inlineCodeConfig.let {
             (it.outlineWidth + it.horizontalPadding) * 2f
         }
@@ -87,9 +102,23 @@ class TextDrawable(
             return null
         }
 
-        var splitPoint = formattedText.indices.drop(styleChars).firstOrNull {
-            formattedText.substring(0, it + 1).width(scaleModifier) > maxWidth
-        } ?: throw IllegalStateException("TextDrawable#split called when it should not have been called")
+        // Binary search for the first character which no longer fits, this relies on the width of a prefix never
+        // decreasing as it gets longer.
+        fun fits(index: Int) = formattedText.substring(0, index + 1).width(scaleModifier) <= maxWidth
+        if (fits(formattedText.lastIndex)) {
+            throw IllegalStateException("TextDrawable#split called when it should not have been called")
+        }
+        var low = styleChars
+        var high = formattedText.lastIndex
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (fits(mid)) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        var splitPoint = low
 
         splitPoint -= styleChars
 
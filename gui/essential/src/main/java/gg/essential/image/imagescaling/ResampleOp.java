@@ -19,16 +19,12 @@ package gg.essential.image.imagescaling;
 
 import gg.essential.gui.screenshot.downsampling.BufferBackedImage;
 import gg.essential.gui.screenshot.downsampling.PixelBuffer;
+import gg.essential.util.EssentialExecutors;
+import gg.essential.util.LaneExecutor;
 import io.netty.buffer.ByteBuf;
 
 import java.nio.ByteBuffer;
-import java.util.Comparator;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -40,17 +36,14 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Heinz Doerr
  */
 public class ResampleOp extends AdvancedResizeOp {
-    private static final ExecutorService service = new ThreadPoolExecutor(100, 100,
-        0L, TimeUnit.MILLISECONDS,
-        new PriorityBlockingQueue<>(100, Comparator.comparingInt(o -> ((ResampleTask) o).targetWidth)));
-
-    private static final Executor backgroundService = Runnable::run;
-
-    private static Executor getService() {
-        if (isBackgroundTask.get()) {
-            return backgroundService;
+    private static void execute(ResampleTask task) {
+        LaneExecutor cpu = EssentialExecutors.getCpu();
+        if (isBackgroundTask.get() || LaneExecutor.current() == cpu) {
+            // Waiting for the CPU lane from one of its own threads may dead-lock, so just do the work inline
+            task.run();
         } else {
-            return service;
+            // Smaller images first, they are likely needed sooner
+            cpu.execute(task, -task.targetWidth);
         }
     }
 
@@ -225,7 +218,7 @@ public class ResampleOp extends AdvancedResizeOp {
         for (int i = 0; i < numberOfThreads; i++) {
             final int finalI = i;
             CountDownLatch finalLatch1 = latch;
-            getService().execute(new ResampleTask(dstWidth, () -> horizontallyFromSrcToWork(scrImgCopy, workPixelsCopy, finalI, numberOfThreads, finalLatch1)));
+            execute(new ResampleTask(dstWidth, () -> horizontallyFromSrcToWork(scrImgCopy, workPixelsCopy, finalI, numberOfThreads, finalLatch1)));
         }
         latch.await();
 
@@ -240,7 +233,7 @@ public class ResampleOp extends AdvancedResizeOp {
         for (int i = 0; i < numberOfThreads; i++) {
             final int finalI = i;
             CountDownLatch finalLatch = latch;
-            getService().execute(new ResampleTask(dstWidth, () -> verticalFromWorkToDst(workPixelsCopy, outPixelsCopy, finalI, numberOfThreads, finalLatch)));
+            execute(new ResampleTask(dstWidth, () -> verticalFromWorkToDst(workPixelsCopy, outPixelsCopy, finalI, numberOfThreads, finalLatch)));
         }
 
         latch.await();
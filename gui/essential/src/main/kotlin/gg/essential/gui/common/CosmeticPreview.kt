@@ -28,14 +28,31 @@ import gg.essential.mod.cosmetics.CAPE_DISABLED_COSMETIC
 import gg.essential.mod.cosmetics.preview.PerspectiveCamera
 import gg.essential.mod.cosmetics.settings.CosmeticSetting
 import gg.essential.network.cosmetics.Cosmetic
+import gg.essential.universal.UMatrixStack
 import gg.essential.util.GuiEssentialPlatform.Companion.platform
 
-class CosmeticPreview(val cosmetic: Cosmetic, val settings: State<List<CosmeticSetting>> = mutableListStateOf()) : UIContainer() {
+/**
+ * Renders a player wearing the given [cosmetic] (or playing it, if it is an emote).
+ *
+ * If [live] is given, the player is only rendered live while it is `true` (e.g. while hovered), otherwise a still image
+ * of the fully loaded preview is drawn instead (see [PreviewThumbnails]). Emotes are always rendered live, because
+ * they follow the player's own skin and are pointless without animation.
+ */
+class CosmeticPreview(
+    val cosmetic: Cosmetic,
+    val settings: State<List<CosmeticSetting>> = mutableListStateOf(),
+    private val live: State<Boolean>? = null,
+) : UIContainer() {
 
     private var loadingIcon = LoadingIcon(2.0)
     private val emulatedUI3DPlayer: UIPlayer
     private val emoteScheduler: EmoteScheduler?
 
+    private var loaded = false
+    private val thumbnailKey = memo { Triple(cosmetic.id, cosmetic.files, settings()) }
+    private var still: PreviewThumbnails.Still? = null
+    private var stillKey: Any? = null
+
     init {
         val profile = if (cosmetic.type.slot == CosmeticSlot.EMOTE) {
             null // A null profile will copy the player's profile so it will adapt to skin changes
@@ -83,8 +100,32 @@ class CosmeticPreview(val cosmetic: Cosmetic, val settings: State<List<CosmeticS
                 // Replace the zero-size scissor effect we used while loading with a regularly sized one
                 emulatedUI3DPlayer.removeEffect<ScissorEffect>()
                 emulatedUI3DPlayer.enableEffect(ScissorEffect())
-
+                loaded = true
             }
         }
     }
+
+    override fun draw(matrixStack: UMatrixStack) {
+        val still = if (live != null && emoteScheduler == null && loaded && !live.getUntracked()) getStill() else null
+        if (still == null) {
+            super.draw(matrixStack)
+            return
+        }
+
+        beforeDraw(matrixStack)
+        still.draw(matrixStack, emulatedUI3DPlayer)
+        afterDraw(matrixStack)
+    }
+
+    private fun getStill(): PreviewThumbnails.Still? {
+        val key = thumbnailKey.getUntracked()
+        val still = still
+        if (still != null && stillKey === key && !still.deleted && still.fits(emulatedUI3DPlayer)) {
+            return still
+        }
+        return PreviewThumbnails.getOrCapture(key, emulatedUI3DPlayer)?.also {
+            this.still = it
+            this.stillKey = key
+        }
+    }
 }
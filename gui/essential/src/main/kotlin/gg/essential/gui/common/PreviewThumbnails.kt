@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.common
+
+import gg.essential.elementa.UIComponent
+import gg.essential.elementa.effects.ScissorEffect
+import gg.essential.universal.UGraphics
+import gg.essential.universal.UMatrixStack
+import gg.essential.universal.UResolution
+import gg.essential.universal.render.URenderPipeline
+import gg.essential.universal.shader.BlendState
+import gg.essential.universal.vertex.UBufferBuilder
+import gg.essential.util.GlFrameBuffer
+import gg.essential.util.image.GpuTexture
+import org.lwjgl.opengl.GL11
+import kotlin.math.roundToInt
+
+/**
+ * Cache of still images of 3D previews (e.g. [CosmeticPreview]), so wardrobe tiles which are not currently being
+ * interacted with can draw a single texture instead of rendering a full player model with cosmetics every frame.
+ * Should be [clear]ed once the screen using it is closed, so the stills do not occupy video memory for the rest of the
+ * session.
+ *
+ * Stills are captured by rendering the preview into an off-screen frame buffer of the same size as the main one (so
+ * the projection and scissor computations of the player are exactly the same as when rendering live) and then copying
+ * out only the region covered by the preview into a plain color texture.
+ * To not cause a frame time spike when a category with many tiles is opened, only as many stills are captured as fit
+ * into a small time budget per frame, all other previews simply keep rendering live until it is their turn.
+ *
+ * Must only be used from the main thread.
+ */
+object PreviewThumbnails {
+    private const val MAX_STILLS = 256
+    private const val FRAME_NANOS = 16_000_000L
+    private const val FRAME_BUDGET_NANOS = 2_000_000L
+
+    private var scratch: GlFrameBuffer? = null
+
+    private val stills = object : LinkedHashMap<Any, Still>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Any, Still>): Boolean {
+            if (size <= MAX_STILLS) return false
+            eldest.value.delete()
+            return true
+        }
+    }
+
+    private var frameStart = 0L
+    private var frameSpent = 0L
+
+    /**
+     * Returns the still for the given [key] if one has previously been captured at the current size of [component], or
+     * captures a new one if this frame's budget allows for it, otherwise returns `null`.
+     */
+    fun getOrCapture(key: Any, component: UIComponent): Still? {
+        val scale = UResolution.scaleFactor
+        val x = (component.getLeft() * scale).roundToInt()
+        val y = (component.getTop() * scale).roundToInt()
+        val width = (component.getWidth() * scale).roundToInt()
+        val height = (component.getHeight() * scale).roundToInt()
+
+        val existing = stills[key]
+        if (existing != null && existing.fits(component)) {
+            return existing
+        }
+
+        val viewportWidth = UResolution.viewportWidth
+        val viewportHeight = UResolution.viewportHeight
+        if (width <= 0 || height <= 0 || x < 0 || y < 0 || x + width > viewportWidth || y + height > viewportHeight) {
+            // Not (fully) on screen, we'd only capture part of it
+            return null
+        }
+
+        val now = System.nanoTime()
+        if (now - frameStart > FRAME_NANOS) {
+            frameStart = now
+            frameSpent = 0
+        }
+        if (frameSpent >= FRAME_BUDGET_NANOS) {
+            return null
+        }
+
+        val scratch = scratch?.apply { resize(viewportWidth, viewportHeight) }
+            ?: GlFrameBuffer(viewportWidth, viewportHeight).also { scratch = it }
+        scratch.clear()
+
+        // The preview is usually drawn inside a scroller whose scissor would otherwise crop the still (and that cropped
+        // still would then be cached), so capture it without any of its parents' scissors applied.
+        val previousScissorEffectState = ScissorEffect.currentScissorState
+        ScissorEffect.currentScissorState = null // required for Mc12106ScissorHandler to behave correctly
+        val previousScissorState = GL11.glGetBoolean(GL11.GL_SCISSOR_TEST)
+        GL11.glDisable(GL11.GL_SCISSOR_TEST)
+        try {
+            scratch.useAsRenderTarget { stack, _, _ ->
+                // Undo the undoing of MC's scaling, we want the exact same coordinates as on the main frame buffer
+                stack.scale(scale, scale, 1.0)
+                component.draw(stack)
+            }
+        } finally {
+            if (previousScissorState) {
+                GL11.glEnable(GL11.GL_SCISSOR_TEST)
+            }
+            ScissorEffect.currentScissorState = previousScissorEffectState
+        }
+
+        // Only the color is needed to draw the still later, so no need for a whole frame buffer with depth attachment
+        val texture = GpuTexture(width, height, GpuTexture.Format.RGBA8)
+        // Frame buffer textures are bottom-up, GUI coordinates are top-down
+        texture.copyFrom(listOf(
+            GpuTexture.CopyOp(scratch.texture, x, viewportHeight - y - height, 0, 0, width, height)
+        ))
+
+        existing?.delete()
+        val still = Still(texture)
+        stills[key] = still
+
+        frameSpent += System.nanoTime() - now
+        return still
+    }
+
+    /** Deletes all stills and the scratch frame buffer, they will be re-captured as needed. */
+    fun clear() {
+        for (still in stills.values) {
+            still.delete()
+        }
+        stills.clear()
+        scratch?.delete()
+        scratch = null
+    }
+
+    class Still internal constructor(private val texture: GpuTexture) {
+        /** Set once this still has been evicted from the cache, at which point it must no longer be drawn. */
+        var deleted = false
+            private set
+
+        fun draw(matrixStack: UMatrixStack, component: UIComponent) {
+            val x = component.getLeft().toDouble()
+            val y = component.getTop().toDouble()
+            val width = component.getWidth().toDouble()
+            val height = component.getHeight().toDouble()
+            // Texture is bottom-up, so flip it vertically
+            UBufferBuilder.create(UGraphics.DrawMode.QUADS, UGraphics.CommonVertexFormats.POSITION_TEXTURE).also { buffer ->
+                buffer.pos(matrixStack, x, y + height, 0.0).tex(0.0, 0.0).endVertex()
+                buffer.pos(matrixStack, x + width, y + height, 0.0).tex(1.0, 0.0).endVertex()
+                buffer.pos(matrixStack, x + width, y, 0.0).tex(1.0, 1.0).endVertex()
+                buffer.pos(matrixStack, x, y, 0.0).tex(0.0, 1.0).endVertex()
+            }.build()?.drawAndClose(PIPELINE) {
+                texture(0, texture.glId)
+            }
+        }
+
+        /** Whether this still was captured at the current size of [component]. */
+        fun fits(component: UIComponent): Boolean {
+            val scale = UResolution.scaleFactor
+            return texture.width == (component.getWidth() * scale).roundToInt()
+                && texture.height == (component.getHeight() * scale).roundToInt()
+        }
+
+        internal fun delete() {
+            deleted = true
+            texture.delete()
+        }
+    }
+
+    private val PIPELINE = URenderPipeline.builderWithDefaultShader(
+        "essential:preview_still",
+        UGraphics.DrawMode.QUADS,
+        UGraphics.CommonVertexFormats.POSITION_TEXTURE,
+    ).apply {
+        blendState = BlendState.ALPHA
+    }.build()
+}
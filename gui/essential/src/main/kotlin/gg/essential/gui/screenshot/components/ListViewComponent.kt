@@ -65,7 +65,7 @@ class ListViewComponent(
         searchBar.textContentV2,
     ) {
         override fun LayoutScope.layoutItem(id: ScreenshotId) {
-            ScreenshotItem(id, this@ListViewComponent, numberOfItemsPerRow, desiredImageSize)()
+            ScreenshotItem(id, this@ListViewComponent, desiredImageSize)()
         }
     }
 
@@ -16,9 +16,7 @@ import gg.essential.elementa.constraints.*
 import gg.essential.elementa.dsl.*
 import gg.essential.elementa.effects.ScissorEffect
 import gg.essential.gui.EssentialPalette
-import gg.essential.gui.layoutdsl.Arrangement
 import gg.essential.gui.layoutdsl.BasicYModifier
-import gg.essential.gui.layoutdsl.FloatPosition
 import gg.essential.gui.layoutdsl.LayoutScope
 import gg.essential.gui.layoutdsl.Modifier
 import gg.essential.gui.layoutdsl.box
@@ -29,7 +27,6 @@ import gg.essential.gui.layoutdsl.column
 import gg.essential.gui.layoutdsl.effect
 import gg.essential.gui.layoutdsl.fillWidth
 import gg.essential.gui.layoutdsl.floatingBox
-import gg.essential.gui.layoutdsl.flowContainer
 import gg.essential.gui.layoutdsl.height
 import gg.essential.gui.layoutdsl.text
 import gg.essential.gui.screenshot.DateRange
@@ -64,12 +61,6 @@ fun LayoutScope.screenshotDateGroup(
                 }
             }
         }
-        flowContainer(
-            Modifier.fillWidth(),
-            xSpacingMin = screenshotPadding,
-            ySpacing = screenshotPadding,
-            itemArrangement = Arrangement.spacedBy(screenshotPadding, FloatPosition.START),
-            block = block,
-        )
+        block()
     }
 }
@@ -12,16 +12,13 @@
 package gg.essential.gui.screenshot.components
 
 import gg.essential.elementa.UIComponent
-import gg.essential.elementa.constraints.AspectConstraint
 import gg.essential.elementa.dsl.*
 import gg.essential.elementa.state.BasicState
 import gg.essential.gui.EssentialPalette
 import gg.essential.gui.common.*
 import gg.essential.gui.common.shadow.ShadowIcon
 import gg.essential.gui.elementa.state.v2.MutableState
-import gg.essential.gui.elementa.state.v2.State
 import gg.essential.gui.elementa.state.v2.combinators.map
-import gg.essential.gui.elementa.state.v2.toV1
 import gg.essential.gui.layoutdsl.Alignment
 import gg.essential.gui.layoutdsl.LayoutScope
 import gg.essential.gui.layoutdsl.Modifier
@@ -37,7 +34,6 @@ import gg.essential.gui.layoutdsl.outline
 import gg.essential.gui.layoutdsl.then
 import gg.essential.gui.layoutdsl.whenHovered
 import gg.essential.gui.screenshot.ScreenshotId
-import gg.essential.gui.screenshot.constraints.TileConstraint
 import gg.essential.gui.util.hoverScope
 import gg.essential.gui.util.hoverScopeV2
 import gg.essential.universal.USound
@@ -47,7 +43,6 @@ import gg.essential.vigilance.utils.onLeftClick
 class ScreenshotItem(
     val id: ScreenshotId,
     private val viewComponent: ListViewComponent,
-    private val numberOfItemsPerRow: State<Int>,
     desiredImageSize: MutableState<Pair<Int, Int>>,
 ) : ScreenshotPreview(
     id,
@@ -123,8 +118,8 @@ class ScreenshotItem(
         }
 
         constrain {
-            width = TileConstraint(numberOfItemsPerRow.toV1(this@ScreenshotItem), screenshotPadding)
-            height = AspectConstraint(9 / 16f)
+            width = 100.percent
+            height = 100.percent
         }
 
         container.onMouseClick {
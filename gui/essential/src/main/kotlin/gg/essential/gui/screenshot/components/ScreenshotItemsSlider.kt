@@ -22,6 +22,7 @@ import gg.essential.gui.elementa.state.v2.MutableState
 import gg.essential.gui.layoutdsl.Alignment
 import gg.essential.gui.layoutdsl.Arrangement
 import gg.essential.gui.layoutdsl.Modifier
+import gg.essential.gui.layoutdsl.VirtualGrid
 import gg.essential.gui.layoutdsl.alignVertical
 import gg.essential.gui.layoutdsl.childBasedWidth
 import gg.essential.gui.layoutdsl.fillHeight
@@ -86,7 +87,7 @@ class ScreenshotItemsSlider(
 
         val scrollComponent = getScroller()
         val scrollerCenter = scrollComponent.center()
-        var closest = scrollToScreenshotId?.let { getComponentById(it) }
+        val closest = scrollToScreenshotId?.let { getComponentById(it) }
             ?: scrollComponent.findChildrenOfType<ScreenshotPreview>(true)
                 .minByOrNull { abs(scrollerCenter - it.center()) }
 
@@ -98,9 +99,9 @@ class ScreenshotItemsSlider(
 
             this.itemsPerRow.set(itemsPerRow)
             Window.of(scrollComponent).animationFrame()
-            closest = getComponentById(screenshotId)
-            if (closest != null) {
-                scrollComponent.scrollTo(verticalOffset = offset - (closest.getTop() - top), smoothScroll = false)
+            val newTop = getTopById(screenshotId)
+            if (newTop != null) {
+                scrollComponent.scrollTo(verticalOffset = offset - (newTop - top), smoothScroll = false)
                 scrollToScreenshotId = screenshotId
             } else {
                 scrollToScreenshotId = null
@@ -114,4 +115,15 @@ class ScreenshotItemsSlider(
         return getScroller().findChildrenOfType<ScreenshotPreview>(true)
             .firstOrNull { it.screenshotId == screenshotId }
     }
+
+    /** Top of the given screenshot's cell, even if the cell has not been built because it is outside the visible area. */
+    private fun getTopById(screenshotId: ScreenshotId): Float? {
+        getComponentById(screenshotId)?.let { return it.getTop() }
+        for (grid in getScroller().findChildrenOfType<VirtualGrid<*>>(true)) {
+            @Suppress("UNCHECKED_CAST")
+            val offset = (grid as VirtualGrid<ScreenshotId>).offsetOfItem(screenshotId) ?: continue
+            return grid.getTop() + offset
+        }
+        return null
+    }
 }
\ No newline at end of file
@@ -45,6 +45,7 @@ import gg.essential.gui.layoutdsl.row
 import gg.essential.gui.layoutdsl.scrollable
 import gg.essential.gui.layoutdsl.spacer
 import gg.essential.gui.layoutdsl.text
+import gg.essential.gui.layoutdsl.virtualGrid
 import gg.essential.gui.layoutdsl.withHoverState
 import gg.essential.gui.screenshot.DateRange
 import gg.essential.gui.screenshot.ScreenshotId
@@ -70,11 +71,15 @@ abstract class ScreenshotListView(
 
     private val selectedTab = mutableStateOf(Tab.ALL)
 
-    private val emptyScreenshotText = selectedTab.map {
-        when (it) {
-            Tab.ALL -> "You have no screenshots"
-            Tab.UPLOADED -> "No screenshots uploaded"
-            Tab.LIKED -> "No favorite screenshots"
+    private val emptyScreenshotText = State {
+        val progress = screenshotManager.indexingProgress()
+        when {
+            !progress.done -> "Loading screenshots... (${progress.indexed}/${progress.total})"
+            else -> when (selectedTab()) {
+                Tab.ALL -> "You have no screenshots"
+                Tab.UPLOADED -> "No screenshots uploaded"
+                Tab.LIKED -> "No favorite screenshots"
+            }
         }
     }
 
@@ -189,7 +194,14 @@ abstract class ScreenshotListView(
                     val items = groups.map { groups ->
                         groups.find { it.first == range && it.second == time }?.third ?: emptyList()
                     }.toListState()
-                    forEach(items) { id ->
+                    // Only the visible rows are built, so even thousands of screenshots stay cheap to lay out
+                    virtualGrid(
+                        items,
+                        numberOfItemsPerRow,
+                        aspectRatio = 9 / 16f,
+                        xSpacing = screenshotPadding,
+                        ySpacing = screenshotPadding,
+                    ) { id ->
                         layoutItem(id)
                     }
                 }
@@ -198,6 +210,7 @@ abstract class ScreenshotListView(
         }
     }
 
+    /** Lays out the preview of the given screenshot. It should fill its parent, which has the size of one grid cell. */
     abstract fun LayoutScope.layoutItem(id: ScreenshotId)
 
     private fun filter(metadata: ClientScreenshotMetadata?, tab: Tab): Boolean {
@@ -65,12 +65,14 @@ class ScreenshotProviderManager(
 
     private val minResolutionBicubicProvider = createFileCachedBicubicProvider(minResolutionTargetResolution)
     private var focusImageResolution = createFocusImageProvider(minResolutionTargetResolution)
-    private val minResolutionMinecraftWindowedTextureProvider = platform.newWindowedTextureProvider(
+    private val minResolutionMinecraftWindowedTextureProvider = platform.newAtlasTextureProvider(
         ThreadedWindowedProvider(
             minResolutionBicubicProvider,
             pool,
             PrioritizedCallable.MIN_RES,
-        )
+        ),
+        minResolutionTargetResolution.first,
+        minResolutionTargetResolution.second,
     )
 
     private val scopePreservedMinResolutionProvider =  ScopePreservingWindowedProvider(
@@ -148,11 +150,14 @@ class ScreenshotProviderManager(
     }
 
     private fun createWindowedTextureProvider(resolution: Pair<Int, Int>): WindowedTextureProvider {
+        val (width, height) = roundResolutionToCommonValues(resolution)
         return ScopeExpansionWindowProvider(
-            platform.newWindowedTextureProvider(
+            platform.newAtlasTextureProvider(
                 ThreadedWindowedProvider(
-                    createFileCachedBicubicProvider(roundResolutionToCommonValues(resolution)), pool, PrioritizedCallable.REGULAR
+                    createFileCachedBicubicProvider(Pair(width, height)), pool, PrioritizedCallable.REGULAR
                 ),
+                width,
+                height,
             ),
             1f,
         )
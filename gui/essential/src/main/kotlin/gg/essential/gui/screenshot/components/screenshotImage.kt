@@ -24,6 +24,7 @@ import gg.essential.gui.layoutdsl.fillParent
 import gg.essential.gui.screenshot.constraints.AspectPreservingFillConstraint
 import gg.essential.gui.screenshot.image.ScreenshotImage
 import gg.essential.gui.screenshot.providers.RegisteredTexture
+import gg.essential.gui.screenshot.providers.TextureRegion
 
 fun LayoutScope.screenshotImage(
     texture: State<RegisteredTexture?>,
@@ -44,7 +45,10 @@ fun LayoutScope.screenshotImage(
         if_(isScreenshotErrored) {
             invalidScreenshotView()
         } `else` {
-            ScreenshotImage(texture.map { it?.identifier })(Modifier.fillParent())
+            ScreenshotImage(
+                texture.map { it?.identifier },
+                texture.map { it?.region ?: TextureRegion.FULL },
+            )(Modifier.fillParent())
 
             block()
         }
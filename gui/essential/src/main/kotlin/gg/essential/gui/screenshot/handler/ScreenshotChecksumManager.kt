@@ -15,6 +15,7 @@ import gg.essential.lib.gson.Gson
 import gg.essential.lib.gson.JsonSyntaxException
 import gg.essential.vigilance.impl.nightconfig.core.utils.ObservedMap
 import org.apache.commons.codec.digest.DigestUtils
+import java.io.Closeable
 import java.io.File
 import java.io.IOException
 import java.nio.file.Path
@@ -28,6 +29,8 @@ class ScreenshotChecksumManager(
 ) {
     private val gson = Gson()
     private var persistChanges = true
+    private var deferredSaves = 0
+    private var pendingSave = false
     private val entries = ObservedMap(mutableMapOf<ChecksumSnapshot, String>()) {
         saveState()
     }
@@ -71,17 +74,32 @@ class ScreenshotChecksumManager(
      * Returns the checksum of the given file
      */
     operator fun get(file: File): String? {
+        val checksumSnapshot = getChecksumSnapshot(file)
         synchronized(entries) {
-            val checksumSnapshot = getChecksumSnapshot(file)
-
-            // computeIfAbsent always initiates the callback, even if the map is not updated
-            val get = entries[checksumSnapshot]
-            return if (get != null) {
-                get
-            } else {
-                val fileChecksum = readFileChecksum(file)
-                fileChecksum?.also {
-                    entries[checksumSnapshot] = fileChecksum
+            entries[checksumSnapshot]?.let { return it }
+        }
+
+        // Hashing is done outside the lock so multiple files can be hashed concurrently
+        val fileChecksum = readFileChecksum(file) ?: return null
+        synchronized(entries) {
+            return entries.getOrPut(checksumSnapshot) { fileChecksum }
+        }
+    }
+
+    /**
+     * Holds back any writes of the cache file until the returned [Closeable] is closed, then writes it once if anything
+     * changed in the meantime.
+     * Useful when many checksums are about to be computed, e.g. during the initial scan of the screenshot folder.
+     */
+    fun deferSaving(): Closeable {
+        synchronized(entries) {
+            deferredSaves++
+        }
+        return Closeable {
+            synchronized(entries) {
+                if (--deferredSaves == 0 && pendingSave) {
+                    pendingSave = false
+                    saveState()
                 }
             }
         }
@@ -120,6 +138,10 @@ class ScreenshotChecksumManager(
         }
 
         synchronized(entries) {
+            if (deferredSaves > 0) {
+                pendingSave = true
+                return
+            }
             cacheFile.writeText(
                 gson.toJson(entries.map { SerializedChecksum(it.value, it.key) }),
             )
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.screenshot.handler
+
+import gg.essential.gui.elementa.state.v2.MutableState
+import gg.essential.gui.elementa.state.v2.State
+import gg.essential.gui.elementa.state.v2.mutableStateOf
+import gg.essential.util.Client
+import kotlinx.coroutines.CoroutineName
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.nio.file.DirectoryIteratorException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Builds the initial index (file name -> checksum) of the screenshot folder.
+ *
+ * Files are hashed by a fixed set of [ioParallelism] workers while the folder is still being listed, and results are
+ * handed to the consumer in batches on the main thread, so the screenshot browser becomes usable long before the last
+ * file of a large folder has been indexed.
+ */
+class ScreenshotIndexer @JvmOverloads constructor(
+    private val checksumManager: ScreenshotChecksumManager,
+    private val metadataManager: ScreenshotMetadataManager,
+    private val ioParallelism: Int = (Runtime.getRuntime().availableProcessors() / 2).coerceIn(2, 4),
+    private val batchSize: Int = 256,
+    private val batchInterval: Long = 100,
+) {
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO + CoroutineName("essential-screenshot-indexer"))
+
+    private val mutableProgress: MutableState<Progress> = mutableStateOf(Progress(0, 0, false))
+
+    /**
+     * Progress of the current (or last) indexing run. Only updated on the main thread.
+     * Not [done][Progress.done] until the first run has finished.
+     */
+    val progress: State<Progress> = mutableProgress
+
+    /**
+     * Time in milliseconds between the start of the last run and the first batch being published, i.e. the point at
+     * which the first thumbnail can be shown. `-1` if no batch has been published yet.
+     */
+    @Volatile
+    var timeToFirstBatch: Long = -1
+        private set
+
+    /**
+     * Indexes all files in [folder] whose names are accepted by [filter].
+     * [onListed] is called on a background thread with the name of each such file as soon as it has been listed, i.e.
+     * before it is hashed.
+     * [onBatch] is called on the main thread with (name, checksum) pairs of the indexed files. Files for which no
+     * checksum could be computed (e.g. because they have been deleted in the meantime) are skipped.
+     */
+    fun index(
+        folder: Path,
+        filter: (String) -> Boolean,
+        onListed: (String) -> Unit,
+        onBatch: (List<Pair<String, String>>) -> Unit,
+    ): Job {
+        return scope.launch {
+            checksumManager.deferSaving().use {
+                indexFolder(folder, filter, onListed, onBatch)
+            }
+        }
+    }
+
+    private suspend fun indexFolder(
+        folder: Path,
+        filter: (String) -> Boolean,
+        onListed: (String) -> Unit,
+        onBatch: (List<Pair<String, String>>) -> Unit,
+    ) = coroutineScope {
+        val start = System.nanoTime()
+        timeToFirstBatch = -1
+
+        val listed = AtomicInteger()
+        val paths = Channel<Path>(batchSize)
+        val results = Channel<Pair<String, String>?>(batchSize)
+
+        launch {
+            coroutineScope {
+                launch {
+                    try {
+                        Files.newDirectoryStream(folder).use { stream ->
+                            for (path in stream) {
+                                val name = path.fileName.toString()
+                                if (!filter(name)) continue
+                                listed.incrementAndGet()
+                                onListed(name)
+                                paths.send(path)
+                            }
+                        }
+                    } catch (e: IOException) {
+                        LOGGER.error("Failed to list screenshot folder $folder", e)
+                    } catch (e: DirectoryIteratorException) {
+                        LOGGER.error("Failed to list screenshot folder $folder", e.cause)
+                    } finally {
+                        paths.close()
+                    }
+                }
+                repeat(ioParallelism) {
+                    launch {
+                        for (path in paths) {
+                            results.send(resolve(path.toFile()))
+                        }
+                    }
+                }
+            }
+            results.close()
+        }
+
+        var processed = 0
+        var published = 0
+        var batch = mutableListOf<Pair<String, String>>()
+        var lastFlush = System.nanoTime()
+
+        suspend fun flush(done: Boolean) {
+            val entries = batch
+            batch = mutableListOf()
+            lastFlush = System.nanoTime()
+
+            val progress = Progress(processed, if (done) processed else listed.get(), done)
+            if (entries.isNotEmpty() && published == 0) {
+                timeToFirstBatch = TimeUnit.NANOSECONDS.toMillis(lastFlush - start)
+                LOGGER.debug("First {} screenshots indexed after {}ms", entries.size, timeToFirstBatch)
+            }
+            published += entries.size
+            withContext(Dispatchers.Client) {
+                if (entries.isNotEmpty()) {
+                    onBatch(entries)
+                }
+                mutableProgress.set(progress)
+            }
+        }
+
+        for (entry in results) {
+            processed++
+            if (entry != null) {
+                batch.add(entry)
+            }
+            // The very first entry is published right away, so the browser has something to show as early as possible
+            if (batch.size >= batchSize
+                || (published == 0 && batch.isNotEmpty())
+                || System.nanoTime() - lastFlush >= TimeUnit.MILLISECONDS.toNanos(batchInterval)
+            ) {
+                flush(false)
+            }
+        }
+        flush(true)
+
+        LOGGER.info(
+            "Indexed {} screenshots in {}ms (first batch after {}ms)",
+            published,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            timeToFirstBatch,
+        )
+    }
+
+    /** Returns the (name, checksum) pair for the given file, or `null` if it could not be indexed. Never throws. */
+    private fun resolve(file: File): Pair<String, String>? {
+        return try {
+            val checksum = checksumManager[file] ?: return null
+            // Primes the metadata cache
+            metadataManager.getMetadata(file)
+            Pair(file.name, checksum)
+        } catch (e: Exception) {
+            // A single broken file must not take down the whole run, or progress would never be done
+            LOGGER.error("Failed to index screenshot $file", e)
+            null
+        }
+    }
+
+    data class Progress(val indexed: Int, val total: Int, val done: Boolean)
+
+    companion object {
+        private val LOGGER = LoggerFactory.getLogger(ScreenshotIndexer::class.java)
+    }
+}
@@ -171,8 +171,11 @@ class ScreenshotMetadataManager(
     private val stateByChecksum: MutableMap<String, MutableState<ClientScreenshotMetadata?>> = MapMaker().weakValues().makeMap()
 
     private fun updateState(checksum: String, newMetadata: ClientScreenshotMetadata?) {
+        // Avoid a round-trip to the main thread if no one is listening (yet), which is the common case when the
+        // metadata cache is being primed. Any state created later on will read the new value from [metadataCache].
+        val state = stateByChecksum[checksum] ?: return
         runBlocking(Dispatchers.Client) {
-            stateByChecksum[checksum]?.set(newMetadata)
+            state.set(newMetadata)
         }
     }
 
@@ -14,6 +14,7 @@ package gg.essential.gui.screenshot.image
 import gg.essential.elementa.UIComponent
 import gg.essential.gui.elementa.state.v2.State
 import gg.essential.gui.elementa.state.v2.stateOf
+import gg.essential.gui.screenshot.providers.TextureRegion
 import gg.essential.universal.UGraphics
 import gg.essential.universal.UMatrixStack
 import gg.essential.universal.render.URenderPipeline
@@ -23,7 +24,10 @@ import gg.essential.util.GuiEssentialPlatform.Companion.platform
 import gg.essential.util.UIdentifier
 import java.awt.Color
 
-open class ScreenshotImage(val texture: State<UIdentifier?>) : UIComponent() {
+open class ScreenshotImage(
+    val texture: State<UIdentifier?>,
+    val region: State<TextureRegion> = stateOf(TextureRegion.FULL),
+) : UIComponent() {
 
     constructor(texture: UIdentifier? = null) : this(stateOf(texture))
 
@@ -58,6 +62,7 @@ open class ScreenshotImage(val texture: State<UIdentifier?>) : UIComponent() {
     ) {
         val textureInstance = texture.getUntracked() ?: return
         val textureId = platform.getGlId(textureInstance)
+        val (u0, v0, u1, v1) = region.getUntracked()
 
         val red = color.red.toFloat() / 255f
         val green = color.green.toFloat() / 255f
@@ -65,11 +70,11 @@ open class ScreenshotImage(val texture: State<UIdentifier?>) : UIComponent() {
         val alpha = color.alpha.toFloat() / 255f
 
         val worldRenderer = UBufferBuilder.create(UGraphics.DrawMode.QUADS, UGraphics.CommonVertexFormats.POSITION_TEXTURE_COLOR)
-        worldRenderer.pos(matrixStack, 0.0, height, 0.0).tex(0.0, 1.0).color(red, green, blue, alpha).endVertex()
-        worldRenderer.pos(matrixStack, width, height, 0.0).tex(1.0, 1.0).color(red, green, blue, alpha)
+        worldRenderer.pos(matrixStack, 0.0, height, 0.0).tex(u0, v1).color(red, green, blue, alpha).endVertex()
+        worldRenderer.pos(matrixStack, width, height, 0.0).tex(u1, v1).color(red, green, blue, alpha)
             .endVertex()
-        worldRenderer.pos(matrixStack, width, 0.0, 0.0).tex(1.0, 0.0).color(red, green, blue, alpha).endVertex()
-        worldRenderer.pos(matrixStack, 0.0, 0.0, 0.0).tex(0.0, 0.0).color(red, green, blue, alpha).endVertex()
+        worldRenderer.pos(matrixStack, width, 0.0, 0.0).tex(u1, v0).color(red, green, blue, alpha).endVertex()
+        worldRenderer.pos(matrixStack, 0.0, 0.0, 0.0).tex(u0, v0).color(red, green, blue, alpha).endVertex()
         worldRenderer.build()?.drawAndClose(PIPELINE) {
             texture(0, textureId)
         }
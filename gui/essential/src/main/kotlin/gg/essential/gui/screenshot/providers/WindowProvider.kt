@@ -69,7 +69,22 @@ interface WindowedProvider<out T> {
 typealias WindowedImageProvider = WindowedProvider<PixelBuffer>
 typealias WindowedTextureProvider = WindowedProvider<RegisteredTexture>
 
-data class RegisteredTexture(val identifier: UIdentifier, val imageWidth: Int, val imageHeight: Int, val error: Boolean)
+data class RegisteredTexture(
+    val identifier: UIdentifier,
+    val imageWidth: Int,
+    val imageHeight: Int,
+    val error: Boolean,
+    /** The part of the texture at [identifier] which contains the image, e.g. if it is a slot in a shared atlas page. */
+    val region: TextureRegion = TextureRegion.FULL,
+)
+
+/** A rectangular region of a texture in normalized texture coordinates. */
+data class TextureRegion(val u0: Double, val v0: Double, val u1: Double, val v1: Double) {
+    companion object {
+        @JvmField
+        val FULL = TextureRegion(0.0, 0.0, 1.0, 1.0)
+    }
+}
 
 fun Int.toSingleWindowRequest(): List<WindowedProvider.Window> {
     return listOf(WindowedProvider.Window(IntRange(this, this), false))
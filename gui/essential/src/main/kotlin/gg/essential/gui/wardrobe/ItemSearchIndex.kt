@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.wardrobe
+
+import gg.essential.gui.elementa.state.v2.collections.TrackedList
+
+/**
+ * Index for finding all items whose name contains a given search string (ignoring case), without having to check the
+ * name of every single item on every keystroke.
+ *
+ * Names are indexed by all their trigrams, so a search only needs to check those items which contain the least common
+ * trigram of the search string. Searches shorter than three characters will usually match most items anyway, those
+ * simply check all (pre-normalized) names.
+ *
+ * The index follows a [TrackedList] of items via [update], only applying the changes since the previously given list,
+ * and returns results in the order of that list.
+ */
+class ItemSearchIndex<T>(private val name: (T) -> String) {
+    private var list: TrackedList<T>? = null
+
+    /** All entries, in list order. */
+    private val entries = mutableListOf<Entry<T>>()
+    private val trigrams = mutableMapOf<String, MutableSet<Entry<T>>>()
+
+    /** Whether [Entry.position] is outdated for some entries because an entry was added or removed in the middle. */
+    private var positionsDirty = false
+
+    fun update(newList: TrackedList<T>) {
+        val oldList = list
+        if (oldList == null) {
+            newList.forEach { add(entries.size, it) }
+        } else {
+            for (change in newList.getChangesSince(oldList)) {
+                when (change) {
+                    is TrackedList.Add -> add(change.element.index, change.element.value)
+                    is TrackedList.Remove -> remove(change.element.index)
+                    is TrackedList.Clear -> clear()
+                }
+            }
+        }
+        list = newList
+    }
+
+    fun search(query: String): List<T> {
+        val normalizedQuery = normalize(query)
+        if (normalizedQuery.isEmpty()) {
+            return entries.map { it.item }
+        }
+        if (normalizedQuery.length < TRIGRAM) {
+            return entries.mapNotNull { entry -> entry.item.takeIf { normalizedQuery in entry.name } }
+        }
+
+        var candidates: Set<Entry<T>> = emptySet()
+        for ((i, gram) in trigramsOf(normalizedQuery).withIndex()) {
+            val postings = trigrams[gram] ?: return emptyList()
+            if (i == 0 || postings.size < candidates.size) {
+                candidates = postings
+            }
+        }
+
+        updatePositions()
+        return candidates
+            .filter { normalizedQuery in it.name }
+            .sortedBy { it.position }
+            .map { it.item }
+    }
+
+    private fun add(index: Int, item: T) {
+        val entry = Entry(item, normalize(name(item)))
+        if (index == entries.size) {
+            entry.position = index
+        } else {
+            positionsDirty = true
+        }
+        entries.add(index, entry)
+        for (gram in trigramsOf(entry.name)) {
+            trigrams.getOrPut(gram) { mutableSetOf() }.add(entry)
+        }
+    }
+
+    private fun remove(index: Int) {
+        val entry = entries.removeAt(index)
+        if (index != entries.size) {
+            positionsDirty = true
+        }
+        for (gram in trigramsOf(entry.name)) {
+            val postings = trigrams[gram] ?: continue
+            postings.remove(entry)
+            if (postings.isEmpty()) {
+                trigrams.remove(gram)
+            }
+        }
+    }
+
+    private fun clear() {
+        entries.clear()
+        trigrams.clear()
+        positionsDirty = false
+    }
+
+    private fun updatePositions() {
+        if (!positionsDirty) return
+        positionsDirty = false
+        entries.forEachIndexed { index, entry -> entry.position = index }
+    }
+
+    private class Entry<T>(val item: T, val name: String) {
+        var position = 0
+    }
+
+    private companion object {
+        const val TRIGRAM = 3
+
+        fun normalize(str: String) = str.lowercase()
+
+        fun trigramsOf(str: String): Set<String> =
+            (0..str.length - TRIGRAM).mapTo(mutableSetOf()) { str.substring(it, it + TRIGRAM) }
+    }
+}
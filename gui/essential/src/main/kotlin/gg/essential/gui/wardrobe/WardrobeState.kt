@@ -225,14 +225,13 @@ class WardrobeState(
         Item.SkinItem(skin.id, skin.name, skin.skin, skin.createdAt, skin.lastUsedAt, skin.favoritedSince)
     }
 
-    private fun <T : Item> ListState<T>.filteredBySearch() =
-        zipWithEachElement(search) { item, search ->
-            if (item.name.contains(search, ignoreCase = true)) {
-                item
-            } else {
-                null
-            }
-        }.filterNotNull()
+    private fun <T : Item> ListState<T>.filteredBySearch(): ListState<T> {
+        val index = ItemSearchIndex<T> { it.name }
+        return memo {
+            index.update(this@filteredBySearch())
+            index.search(search())
+        }.toListState()
+    }
 
     val visibleCosmeticItems = cosmeticItems.filteredBySearch()
     val visibleBundleItems = bundleItems.filteredBySearch()
@@ -163,15 +163,19 @@ class CategoryComponent(
 
                 val equipped = wardrobeState.equippedCosmeticsState.get().values.toSet() + wardrobeState.emoteWheelManager.selectedEmoteWheelSlots.getUntracked()
 
-                val target = group.cosmeticsContainer.children.getOrNull(cosmetics.indexOfFirst { cosmetic ->
+                val targetIndex = cosmetics.indexOfFirst { cosmetic ->
                     if (highlightedItem != null) {
                         cosmetic.itemId == highlightedItem
                     } else {
                         cosmetic.cosmetic.id in equipped
                     }
-                }) ?: return scroller.scrollToTopOf(group)
+                }
+                if (targetIndex == -1) return scroller.scrollToTopOf(group)
 
-                scroller.scrollToTopOf(target, offset = -CosmeticGroup.headerHeight)
+                // The target may not have been built yet (see `virtualGrid`), so we need to go by its offset
+                val grid = group.cosmeticsContainer
+                val targetTop = grid.getTop() + grid.offsetOf(targetIndex)
+                scroller.scrollTo(verticalOffset = scroller.verticalOffset - (targetTop - scroller.getTop()) + CosmeticGroup.headerHeight)
             }
 
             // Double delay is needed because this component isn't added to the component tree until the next frame
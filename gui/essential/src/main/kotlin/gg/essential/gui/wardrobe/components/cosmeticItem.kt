@@ -231,7 +231,9 @@ fun LayoutScope.cosmeticItem(item: Item, category: WardrobeCategory, state: Ward
                                             ?: item.settingsOverride.setting<CosmeticSetting.Variant>()
                                         listOfNotNull(variantSetting)
                                     }
-                                    CosmeticPreview(item.cosmetic, settings)(Modifier.fillParent())
+                                    // Only render live while the user is interacting with this item, a still is enough otherwise
+                                    val live = containerDontUseThisUnlessYouReallyHaveTo.hoverScopeV2() or selected or editing
+                                    CosmeticPreview(item.cosmetic, settings, live)(Modifier.fillParent())
                                 }
                                 is Item.OutfitItem -> outfitRenderPreview(state, item)
                                 is Item.SkinItem -> skinRenderPreview(item)
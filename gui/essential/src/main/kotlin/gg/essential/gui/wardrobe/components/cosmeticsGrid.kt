@@ -11,7 +11,6 @@
  */
 package gg.essential.gui.wardrobe.components
 
-import gg.essential.elementa.UIComponent
 import gg.essential.gui.elementa.state.v2.ListState
 import gg.essential.gui.layoutdsl.*
 import gg.essential.gui.wardrobe.Item
@@ -23,10 +22,15 @@ fun LayoutScope.cosmeticsGrid(
     cosmetics: ListState<out Item>,
     wardrobeState: WardrobeState,
     modifier: Modifier = Modifier,
-): UIComponent {
-    return flowContainer(modifier.fillWidth(), cosmeticXSpacing, cosmeticYSpacing, Arrangement.spacedBy(cosmeticXSpacing, FloatPosition.START)) {
-        forEach(cosmetics, cache = true) { cosmetic ->
-            cosmeticItem(cosmetic, category, wardrobeState, Modifier)
-        }
+): VirtualGrid<Item> {
+    return virtualGrid(
+        cosmetics,
+        cosmeticWidth,
+        cosmeticWidth + cosmeticTextHeight,
+        cosmeticXSpacing,
+        cosmeticYSpacing,
+        modifier.fillWidth(),
+    ) { cosmetic ->
+        cosmeticItem(cosmetic, category, wardrobeState, Modifier)
     }
 }
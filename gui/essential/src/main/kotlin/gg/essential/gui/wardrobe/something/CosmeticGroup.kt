@@ -54,7 +54,7 @@ class CosmeticGroup(
     }.toListState()
 
     // FIXME: Kotlin emits invalid bytecode if this is `val`, see https://youtrack.jetbrains.com/issue/KT-48757
-    var cosmeticsContainer: UIComponent
+    var cosmeticsContainer: VirtualGrid<Item>
 
     init {
         layoutAsColumn(Modifier.fillWidth().childBasedHeight()) {
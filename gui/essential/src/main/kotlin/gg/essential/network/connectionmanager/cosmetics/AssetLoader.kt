@@ -23,6 +23,7 @@ import gg.essential.model.file.ModelFile
 import gg.essential.model.file.ParticlesFile
 import gg.essential.model.file.SoundDefinitionsFile
 import gg.essential.network.cosmetics.Cosmetic.Diagnostic
+import gg.essential.util.EssentialExecutors
 import gg.essential.util.GuiEssentialPlatform.Companion.platform
 import gg.essential.util.LimitedExecutor
 import gg.essential.util.httpClient
@@ -45,12 +46,7 @@ import java.util.Base64
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executor
-import java.util.concurrent.LinkedBlockingQueue
 import java.util.concurrent.PriorityBlockingQueue
-import java.util.concurrent.ThreadFactory
-import java.util.concurrent.ThreadPoolExecutor
-import java.util.concurrent.TimeUnit
-import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicReference
 
 class AssetLoader(private val cachePath: Path) {
@@ -58,16 +54,9 @@ class AssetLoader(private val cachePath: Path) {
         private val logger = LoggerFactory.getLogger(AssetLoader::class.java)
     }
 
-    private val pool = ThreadPoolExecutor(
-        0, Int.MAX_VALUE,
-        10L, TimeUnit.SECONDS,
-        LinkedBlockingQueue(),
-        AtomicInteger().let { threadId ->
-            ThreadFactory { Thread(it, "Essential Asset Loader " + threadId.incrementAndGet()) }
-        },
-    )
-    private val networkExecutor = LimitedExecutor(pool, 10, PriorityBlockingQueue())
-    private val diskExecutor = LimitedExecutor(pool, 10, PriorityBlockingQueue())
+    private val networkExecutor = LimitedExecutor(EssentialExecutors.transfer, 10, PriorityBlockingQueue())
+    // Only takes a small share of the IO lane, so loading the wardrobe cannot hold up unrelated IO work
+    private val diskExecutor = LimitedExecutor(EssentialExecutors.io, 4, PriorityBlockingQueue())
 
     private val assets: MutableMap<String, AssetState> = ConcurrentHashMap()
 
@@ -88,13 +77,13 @@ class AssetLoader(private val cachePath: Path) {
         state.ensurePriorityAtLeast(priority)
         @Suppress("UNCHECKED_CAST")
         return state.parsed.computeIfAbsent(type) {
-            val future: CompletableFuture<T> = state.future.thenApplyAsync { bytes ->
+            val future: CompletableFuture<T> = state.future.thenApplyAsync({ bytes ->
                 try {
                     type.parse(asset, bytes)
                 } catch (e: Exception) {
                     throw ParseException(asset, type, bytes, e)
                 }
-            }
+            }, EssentialExecutors.cpu)
             Asset(state.info, type, state.future, future)
         } as Asset<T>
     }
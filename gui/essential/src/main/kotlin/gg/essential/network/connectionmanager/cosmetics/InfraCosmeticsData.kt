@@ -22,6 +22,7 @@ import gg.essential.cosmetics.CosmeticCategoryId
 import gg.essential.cosmetics.CosmeticId
 import gg.essential.cosmetics.model.CosmeticStoreBundle
 import gg.essential.gui.elementa.state.v2.add
+import gg.essential.gui.elementa.state.v2.batchUpdates
 import gg.essential.gui.elementa.state.v2.clear
 import gg.essential.gui.elementa.state.v2.set
 import gg.essential.mod.EssentialAsset
@@ -85,6 +86,14 @@ class InfraCosmeticsData private constructor(
         categoriesKnownOrRequested.add("popular")
     }
 
+    /**
+     * Adds all given categories at once, so anything derived from the cosmetics data (e.g. the wardrobe) only updates
+     * once rather than once per category.
+     */
+    fun addCategories(infraCategories: Collection<InfraCategory>) = batchUpdates {
+        infraCategories.forEach(::addCategory)
+    }
+
     fun addCategory(infraCategory: InfraCategory) {
         categoriesKnownOrRequested.add(infraCategory.id)
         activeCategoryRequests.remove(infraCategory.id)
@@ -98,6 +107,11 @@ class InfraCosmeticsData private constructor(
         }
     }
 
+    /** Adds all given types at once, see [addCategories]. */
+    fun addTypes(infraTypes: Collection<InfraType>) = batchUpdates {
+        infraTypes.forEach(::addType)
+    }
+
     fun addType(infraType: InfraType) {
         val type = infraType.toMod()
         val existingIndex = state.types.get().indexOfFirst { it.id == type.id }
@@ -146,6 +160,11 @@ class InfraCosmeticsData private constructor(
         }, Dispatchers.Client.asExecutor())
     }
 
+    /** Adds all given bundles at once, see [addCategories]. */
+    fun addBundles(infraBundles: Collection<CosmeticStoreBundle>) = batchUpdates {
+        infraBundles.forEach(::addBundle)
+    }
+
     fun addBundle(infraBundle: CosmeticStoreBundle) {
         bundlesKnownOrRequested.add(infraBundle.id)
         activeBundleRequests.remove(infraBundle.id)
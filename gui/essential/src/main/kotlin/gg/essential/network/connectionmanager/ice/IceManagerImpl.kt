@@ -79,6 +79,7 @@ import java.net.InetAddress
 import java.net.InetSocketAddress
 import java.net.SocketAddress
 import java.net.SocketException
+import java.nio.ByteBuffer
 import java.nio.file.Path
 import java.security.SecureRandom
 import java.time.Instant
@@ -216,7 +217,8 @@ abstract class IceManagerImpl(
 
     protected data class McConnectionArgs(
         val coroutineScope: CoroutineScope,
-        val inboundChannel: ReceiveChannel<ByteArray>,
+        /** Data received from the remote. The buffers are owned by the receiver and may be wrapped without copying. */
+        val inboundChannel: ReceiveChannel<ByteBuffer>,
         val outboundChannel: SendChannel<ByteArray>,
         val onClose: () -> Unit,
     )
@@ -20,11 +20,12 @@ import kotlinx.coroutines.cancel
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.ReceiveChannel
 import kotlinx.coroutines.channels.SendChannel
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.job
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.plus
 import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
+import org.ice4j.pseudotcp.Option
 import org.ice4j.pseudotcp.PseudoTCPBase
 import org.ice4j.pseudotcp.PseudoTcpNotify
 import org.ice4j.pseudotcp.PseudoTcpSocketFactory.DEFAULT_CONVERSATION_ID
@@ -38,6 +39,8 @@ class PseudoTcpChannel(
     coroutineScope: CoroutineScope,
     private val transportRecv: ReceiveChannel<ByteArray>,
     private val transportSend: SendChannel<ByteArray>,
+    sendBufferSize: Int = DEFAULT_SEND_BUFFER_SIZE,
+    receiveBufferSize: Int = DEFAULT_RECEIVE_BUFFER_SIZE,
 ) : PseudoTcpNotify {
     private val internalScope = coroutineScope + Job(coroutineScope.coroutineContext.job) + Dispatchers.Default.limitedParallelism(1)
     private val impl = PseudoTCPBase(this, DEFAULT_CONVERSATION_ID).apply {
@@ -47,20 +50,44 @@ class PseudoTcpChannel(
         // timeout before it retransmits, so we're effectively limited to like 6KB/s for the first few seconds too.
         // PseudoTcpSocketImpl also sets this in its constructor.
         notifyMTU(1450);
+
+        // The default buffers (and therefore windows) of 60-90KB limit throughput to well below what most connections
+        // could do, especially with higher latency (at 100ms RTT, it's less than 1MB/s). The receive buffer size is
+        // sent to the other side (via the window scale option) on connect, so this must be set before that.
+        setOption(Option.OPT_SNDBUF, sendBufferSize.toLong())
+        setOption(Option.OPT_RCVBUF, receiveBufferSize.toLong())
+
+        // MC sends lots of small, latency-sensitive packets and vanilla disables Nagle's algorithm on its TCP
+        // connections too. Combined with delayed acks, leaving it enabled can delay packets by hundreds of milliseconds.
+        setOption(Option.OPT_NODELAY, 1)
     }
 
     private val tcpOpen = CompletableDeferred<Unit>()
     private val tcpReadable = Channel<Unit>(Channel.CONFLATED)
     private val tcpWritable = Channel<Unit>(Channel.CONFLATED)
-    private val tcpInboundChannel = Channel<ByteArray>()
+    private val tcpInboundChannel = Channel<ByteBuffer>()
     private val tcpOutboundChannel = Channel<ByteArray>()
 
-    private var clockJob: Job? = null
+    private val clockRescheduled = Channel<Unit>(Channel.CONFLATED)
 
     init {
+        // A single long-running clock, woken up whenever something happened which may have changed when it should
+        // next fire, rather than cancelling and launching a new coroutine on every single event.
+        internalScope.launch(CoroutineName("PseudoTcp Clock")) {
+            while (true) {
+                val delayMs = impl.getNextClock(PseudoTCPBase.now())
+                if (delayMs == -1L) {
+                    clockRescheduled.receive()
+                    continue
+                }
+                withTimeoutOrNull(delayMs) { clockRescheduled.receive() }
+                    ?: impl.notifyClock(PseudoTCPBase.now())
+            }
+        }
+
         internalScope.launch(CoroutineName("PseudoTCP Read")) {
             tcpOpen.await()
-            val buf = ByteArray(1024)
+            var buf = ByteArray(READ_BUFFER_SIZE)
             while (true) {
                 val len = try {
                     impl.recv(buf, buf.size)
@@ -72,13 +99,18 @@ class PseudoTcpChannel(
                     tcpReadable.receive()
                     continue
                 }
-                val data = buf.sliceArray(0 until len)
-                if (!data.contentEquals(CLOSE_PACKET)) {
-                    tcpInboundChannel.send(data)
-                } else {
+                if (ByteBuffer.wrap(buf, 0, len) == ByteBuffer.wrap(CLOSE_PACKET)) {
                     tcpInboundChannel.close()
                     break
                 }
+                // Large reads are handed on as is (and we'll read into a fresh buffer next time), small ones are copied
+                // into an appropriately sized array so we don't keep lots of mostly empty buffers alive downstream.
+                if (len >= READ_BUFFER_SIZE / 4) {
+                    tcpInboundChannel.send(ByteBuffer.wrap(buf, 0, len))
+                    buf = ByteArray(READ_BUFFER_SIZE)
+                } else {
+                    tcpInboundChannel.send(ByteBuffer.wrap(buf.copyOf(len)))
+                }
             }
         }
         internalScope.launch(CoroutineName("PseudoTCP Write")) {
@@ -115,31 +147,17 @@ class PseudoTcpChannel(
     }
 
     private fun scheduleClock() {
-        clockJob?.cancel()
-        clockJob = null
-
-        val delayMs = impl.getNextClock(PseudoTCPBase.now())
-        if (delayMs == -1L) {
-            return
-        }
-
-        clockJob = internalScope.launch(CoroutineName("PseudoTcp Clock")) {
-            delay(delayMs)
-
-            impl.notifyClock(PseudoTCPBase.now())
-
-            scheduleClock()
-        }
+        clockRescheduled.trySend(Unit)
     }
 
-    suspend fun connect(): Pair<ReceiveChannel<ByteArray>, SendChannel<ByteArray>> {
+    suspend fun connect(): Pair<ReceiveChannel<ByteBuffer>, SendChannel<ByteArray>> {
         impl.connect()
         scheduleClock()
         tcpOpen.await()
         return Pair(tcpInboundChannel, tcpOutboundChannel)
     }
 
-    suspend fun accept(): Pair<ReceiveChannel<ByteArray>, SendChannel<ByteArray>> {
+    suspend fun accept(): Pair<ReceiveChannel<ByteBuffer>, SendChannel<ByteArray>> {
         scheduleClock()
         tcpOpen.await()
         return Pair(tcpInboundChannel, tcpOutboundChannel)
@@ -185,6 +203,11 @@ class PseudoTcpChannel(
     }
 
     companion object {
+        private const val READ_BUFFER_SIZE = 8192
+
+        const val DEFAULT_SEND_BUFFER_SIZE = 1024 * 1024
+        const val DEFAULT_RECEIVE_BUFFER_SIZE = 1024 * 1024
+
         // Ice4j's pseudo TCP implementation does not actually implement socket shutdown. So, to avoid having to wait
         // for timeout each time, we send a specially crafted packet which we can detect on the other side and then
         // close from there as well.
@@ -27,6 +27,7 @@ import kotlinx.coroutines.job
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.plus
 import org.slf4j.Logger
+import java.nio.ByteBuffer
 
 class QuicChannel(
     coroutineScope: CoroutineScope,
@@ -38,7 +39,7 @@ class QuicChannel(
     private val impl = QuicBackendLoader.INSTANCE.createImpl(logger, this)
 
     private val quicOpen = CompletableDeferred<Unit>()
-    private val quicStreamInboundChannel = Channel<ByteArray>(Channel.UNLIMITED)
+    private val quicStreamInboundChannel = Channel<ByteBuffer>(Channel.UNLIMITED)
     private val quicStreamOutboundChannel = Channel<ByteArray>(Channel.UNLIMITED)
 
     init {
@@ -62,7 +63,7 @@ class QuicChannel(
         }
     }
 
-    suspend fun connect(): Pair<Pair<ReceiveChannel<ByteArray>, SendChannel<ByteArray>>, Int> {
+    suspend fun connect(): Pair<Pair<ReceiveChannel<ByteBuffer>, SendChannel<ByteArray>>, Int> {
         logger.debug("QuicChannel.connect")
         val httpPort = impl.connect()
         feeder.start()
@@ -70,7 +71,7 @@ class QuicChannel(
         return Pair(quicStreamInboundChannel, quicStreamOutboundChannel) to httpPort
     }
 
-    suspend fun accept(httpPort: Int): Pair<ReceiveChannel<ByteArray>, SendChannel<ByteArray>> {
+    suspend fun accept(httpPort: Int): Pair<ReceiveChannel<ByteBuffer>, SendChannel<ByteArray>> {
         logger.debug("QuicChannel.accept")
         impl.accept(httpPort)
         feeder.start()
@@ -98,6 +99,6 @@ class QuicChannel(
     }
 
     override fun quicRecv(packet: ByteArray) {
-        quicStreamInboundChannel.trySend(packet)
+        quicStreamInboundChannel.trySend(ByteBuffer.wrap(packet))
     }
 }
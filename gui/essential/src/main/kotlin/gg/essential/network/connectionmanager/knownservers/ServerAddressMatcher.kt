@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.network.connectionmanager.knownservers
+
+import java.util.regex.Pattern
+
+/**
+ * Immutable index for finding the server an address belongs to, given a list of addresses per server.
+ * Addresses of the form `^...$` are regular expressions which need to match the entire address, all others are plain
+ * aliases which need to match exactly.
+ *
+ * Regular expressions are indexed by their literal suffix (e.g. `hypixel.net` for `^(.+\.)?hypixel\.net$`) in a
+ * reversed suffix trie, so a lookup only needs to evaluate the few expressions which could possibly match the given
+ * address instead of all of them.
+ * Additionally, the results of the most recent lookups are cached, because the same handful of addresses tend to be
+ * looked up repeatedly (e.g. once per server list entry and friend every frame).
+ */
+class ServerAddressMatcher<T : Any>(servers: Collection<T>, addresses: (T) -> List<String>) {
+    private val exact = mutableMapOf<String, T>()
+    private val suffixTrie = Node<T>()
+    private val unindexed = mutableListOf<Entry<T>>()
+
+    private val cache = object : LinkedHashMap<String, Any>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Any>?): Boolean = size > CACHE_SIZE
+    }
+
+    init {
+        var order = 0
+        for (server in servers) {
+            for (address in addresses(server)) {
+                if (!isRegex(address)) {
+                    exact[address] = server
+                    continue
+                }
+
+                val entry = Entry(order++, Pattern.compile(address), server)
+                val suffix = literalSuffix(address)
+                if (suffix.isEmpty()) {
+                    unindexed.add(entry)
+                } else {
+                    var node = suffixTrie
+                    for (i in suffix.indices.reversed()) {
+                        node = node.children.getOrPut(suffix[i]) { Node() }
+                    }
+                    node.entries.add(entry)
+                }
+            }
+        }
+    }
+
+    fun find(address: String): T? {
+        exact[address]?.let { return it }
+
+        synchronized(cache) {
+            cache[address]?.let {
+                @Suppress("UNCHECKED_CAST")
+                return if (it === NONE) null else it as T
+            }
+        }
+
+        val result = findByRegex(address)
+
+        synchronized(cache) {
+            cache[address] = result ?: NONE
+        }
+        return result
+    }
+
+    private fun findByRegex(address: String): T? {
+        // Entries are evaluated in declaration order so the result does not depend on which ones were indexed
+        var best: Entry<T>? = null
+        fun consider(entry: Entry<T>) {
+            if (best.let { it != null && it.order < entry.order }) return
+            if (entry.pattern.matcher(address).matches()) {
+                best = entry
+            }
+        }
+
+        unindexed.forEach(::consider)
+
+        var node: Node<T>? = suffixTrie
+        var i = address.length - 1
+        while (node != null) {
+            node.entries.forEach(::consider)
+            if (i < 0) break
+            node = node.children[address[i--]]
+        }
+
+        return best?.server
+    }
+
+    private class Entry<T>(val order: Int, val pattern: Pattern, val server: T)
+
+    private class Node<T> {
+        val children = mutableMapOf<Char, Node<T>>()
+        val entries = mutableListOf<Entry<T>>()
+    }
+
+    companion object {
+        private const val CACHE_SIZE = 256
+        private val NONE = Any()
+
+        fun isRegex(address: String) = address.startsWith("^") && address.endsWith("$")
+
+        /**
+         * Returns the longest string which every address matched by the given `^...$` [regex] must end with.
+         * May be empty if no such suffix could be determined.
+         */
+        internal fun literalSuffix(regex: String): String {
+            val body = regex.substring(1, regex.length - 1)
+            // Flags (e.g. case-insensitivity), quoting and top-level alternatives would all invalidate the suffix
+            if ("(?" in body || "\\Q" in body || hasTopLevelAlternative(body)) {
+                return ""
+            }
+
+            val suffix = StringBuilder()
+            var i = body.length - 1
+            while (i >= 0) {
+                val c = body[i]
+                val escaped = i > 0 && body[i - 1] == '\\' && !(i > 1 && body[i - 2] == '\\')
+                if (escaped) {
+                    // Only escaped punctuation is literal, things like `\d` are character classes
+                    if (c.isLetterOrDigit()) break
+                    suffix.append(c)
+                    i -= 2
+                } else {
+                    if (!c.isLetterOrDigit() && c != '-' && c != '_' && c != ':') break
+                    suffix.append(c)
+                    i -= 1
+                }
+            }
+            return suffix.reverse().toString()
+        }
+
+        private fun hasTopLevelAlternative(body: String): Boolean {
+            var depth = 0
+            var inClass = false
+            var i = 0
+            while (i < body.length) {
+                when (body[i]) {
+                    '\\' -> i++
+                    '[' -> inClass = true
+                    ']' -> inClass = false
+                    '(' -> if (!inClass) depth++
+                    ')' -> if (!inClass) depth--
+                    '|' -> if (!inClass && depth == 0) return true
+                }
+                i++
+            }
+            return false
+        }
+    }
+}
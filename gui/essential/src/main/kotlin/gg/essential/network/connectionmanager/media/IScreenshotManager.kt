@@ -13,8 +13,10 @@ package gg.essential.network.connectionmanager.media
 
 import com.sparkuniverse.toolbox.chat.model.Channel
 import gg.essential.gui.elementa.state.v2.ListState
+import gg.essential.gui.elementa.state.v2.State
 import gg.essential.gui.screenshot.ScreenshotId
 import gg.essential.gui.screenshot.ScreenshotInfo
+import gg.essential.gui.screenshot.handler.ScreenshotIndexer
 import gg.essential.handlers.screenshot.ClientScreenshotMetadata
 import gg.essential.media.model.Media
 import java.awt.image.BufferedImage
@@ -29,6 +31,7 @@ interface IScreenshotManager {
     val uploadedMedia: Collection<Media>
     val orderedPaths: List<Path>
     val screenshots: ListState<ScreenshotInfo>
+    val indexingProgress: State<ScreenshotIndexer.Progress>
 
     fun setFavorite(path: Path, value: Boolean): ClientScreenshotMetadata
     fun setFavorite(path: Media, value: Boolean): ClientScreenshotMetadata
@@ -145,6 +145,13 @@ interface GuiEssentialPlatform {
 
     fun newWindowedTextureProvider(inner: WindowedImageProvider): WindowedTextureProvider
 
+    /**
+     * Like [newWindowedTextureProvider] but packs all images into shared atlas textures.
+     * Images provided by [inner] must fit within [slotWidth]x[slotHeight].
+     * Falls back to one texture per image if slots of that size do not fit into an atlas.
+     */
+    fun newAtlasTextureProvider(inner: WindowedImageProvider, slotWidth: Int, slotHeight: Int): WindowedTextureProvider
+
     fun newUIPlayer(
         camera: State<PerspectiveCamera?>,
         profile: State<Pair<Skin, /*cape*/ String?>?>,
@@ -83,6 +83,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 //#if MC>=11400
@@ -101,11 +103,14 @@ public class Essential implements EssentialAPI {
     public static final Logger logger = LogManager.getLogger("Essential Logger");
     public static final Logger debug = LogManager.getLogger("Essential Logger - Debug");
     private static final InvokerType invoker = determineBestInvokerType();
-    public static final EventBus EVENT_BUS = new EventBus(invoker, e -> logger.error("Error occurred in method: {}", e.getMessage(), e));
+    public static final EventBus EVENT_BUS = new EventBus(invoker, e -> logger.error("Error occurred in method: {}", e.getMessage(), e), true, EventBusProfiler.fromSystemProperties());
     private static Essential instance;
     private static boolean initialized = false;
     private static boolean getInstanceIsLocked = false;
 
+    /** How many startup tasks may run in the background at the same time. */
+    private static final int STARTUP_PARALLELISM = 4;
+
     static {
         if (MinecraftUtils.INSTANCE.isDevelopment()) {
             LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
@@ -149,6 +154,10 @@ public class Essential implements EssentialAPI {
     private Map<Object, Boolean> dynamicListeners = new HashMap<>();
     private EssentialGameRules gameRules;
 
+    private final StartupTrace startupTrace = new StartupTrace();
+    private final Executor startupExecutor = new LimitedExecutor(Multithreading.getPool(), STARTUP_PARALLELISM, new ConcurrentLinkedQueue<>());
+    private StartupGraph preinitGraph;
+
     public static Essential getInstance() {
         if (instance != null) {
             return instance;
@@ -199,32 +208,35 @@ public class Essential implements EssentialAPI {
 
     @Subscribe
     public void preinit(PreInitializationEvent event) {
-        DI.INSTANCE.startDI();
+        StartupGraph graph = preinitGraph = new StartupGraph("preinit", startupExecutor, startupTrace);
 
-        EssentialConfig config = EssentialConfig.INSTANCE;
-        config.initialize(new File(baseDir, "config.toml"));
+        StartupGraph.Task diTask = graph.mainThread("DI", DI.INSTANCE::startDI);
+        StartupGraph.Task configTask = graph.mainThread("Config", () -> EssentialConfig.INSTANCE.initialize(new File(baseDir, "config.toml")));
+        StartupGraph.Task sessionFactoriesTask = graph.mainThread("Session factories", this::loadSessionFactories);
+        StartupGraph.Task connectionManagerTask = graph.mainThread("Connection manager", this.connectionManager::start);
+        StartupGraph.Task ownSkinTask = graph.mainThread("Own skin", () ->
+            PlayerSkinLookup.INSTANCE.supplySkinFromGame(USession.Companion.activeNow().getUuid(), skinManager.getActiveSkin()));
 
-        loadSessionFactories();
-        this.connectionManager.start();
+        // The static initializers of these classes may use any of the above (e.g. EssentialAPI requires DI), so they
+        // must only run once all of them are ready, same as before they were part of the graph.
+        dispatchStaticInitializers(graph, diTask, configTask, sessionFactoriesTask, connectionManagerTask, ownSkinTask);
 
-        PlayerSkinLookup.INSTANCE.supplySkinFromGame(USession.Companion.activeNow().getUuid(), skinManager.getActiveSkin());
-
-        dispatchStaticInitializers();
+        graph.run();
     }
 
     @SuppressWarnings({
         "Convert2MethodRef", // that would initialize them on the main thread
         "ResultOfMethodCallIgnored" // we want the static initializer to run, don't care about the result
     })
-    private void dispatchStaticInitializers() {
-        Multithreading.runAsync(() -> DiscordIntegration.INSTANCE.getClass());
-        Multithreading.runAsync(() -> ElementaFonts.INSTANCE.getClass());
-        Multithreading.runAsync(() -> EssentialAPI.Companion.getClass());
-        Multithreading.runAsync(() -> AutoUpdate.INSTANCE.getClass());
-        Multithreading.runAsync(() -> {
+    private void dispatchStaticInitializers(StartupGraph graph, StartupGraph.Task... prerequisites) {
+        graph.background("DiscordIntegration.<clinit>", () -> DiscordIntegration.INSTANCE.getClass()).dependsOn(prerequisites);
+        graph.background("ElementaFonts.<clinit>", () -> ElementaFonts.INSTANCE.getClass()).dependsOn(prerequisites);
+        graph.background("EssentialAPI.<clinit>", () -> EssentialAPI.Companion.getClass()).dependsOn(prerequisites);
+        graph.background("AutoUpdate.<clinit>", () -> AutoUpdate.INSTANCE.getClass()).dependsOn(prerequisites);
+        graph.background("EssentialPalette.<clinit>", () -> {
             EssentialPalette.INSTANCE.getClass();
             ResourceImageFactory.Companion.preload();
-        });
+        }).dependsOn(prerequisites);
     }
 
     @SuppressWarnings({
@@ -274,6 +286,79 @@ public class Essential implements EssentialAPI {
     }
 
     private void init() {
+        StartupGraph graph = new StartupGraph("init", startupExecutor, startupTrace);
+
+        graph.mainThread("ModCore check", this::checkOldModCore);
+        StartupGraph.Task eventHandlersTask = graph.mainThread("Event handlers", () -> {
+            EventHandler.init();
+            StencilEffect.Companion.enableStencil();
+            McEssentialConfig.INSTANCE.hookUp();
+        });
+        // Background tasks start where they were previously dispatched from, i.e. after the main thread task before them
+        //#if MC<11400
+        graph.background("Stacktrace deobfuscator", this::createStacktraceDeobfuscator).dependsOn(eventHandlersTask);
+        //#endif
+
+        graph.mainThread("Image cache", () ->
+            imageCache = new FileImageCache(new File(getBaseDir(), "image-cache"), 1, TimeUnit.HOURS, true));
+        graph.mainThread("Skin cache", () -> PlayerSkinLookup.INSTANCE.loadCache(getBaseDir().toPath().resolve("cache")));
+        graph.mainThread("Listeners", this::registerListeners);
+        StartupGraph.Task netTask = graph.mainThread("Net", Net.INSTANCE::init);
+        graph.background("Loader stage1 update", () -> {
+            try {
+                EssentialContainerUtil.updateStage1IfOutdated(UMinecraft.getMinecraft().mcDataDir.toPath());
+            } catch (Exception e) {
+                logger.error("Failed to update loader stage1! Auto-update may not behave as expected!", e);
+            }
+        }).dependsOn(netTask);
+        graph.mainThread("Notifications", () -> {
+            registerListener(Notifications.INSTANCE);
+            registerListener(new ReAuthChecker());
+            registerListener(UI3DPlayer.Companion);
+            if (OnboardingData.hasAcceptedTos()) {
+                EVENT_BUS.post(new TosAcceptedEvent());
+            }
+            WindowTitleManager.INSTANCE.register();
+        });
+        //#if MC<11400
+        graph.mainThread("Patcher compatibility", this::disablePatcherScreenshotManager);
+        //#endif
+        graph.mainThread("LAN class loading workaround", this::preloadLanClasses);
+        graph.mainThread("Essential channel", EssentialChannelHandler::registerEssentialChannel);
+        graph.mainThread("Resource reload listener", this::registerResourceReloadListener);
+        // Fetch update changelog now so it is preloaded for later use
+        graph.mainThread("Changelog", AutoUpdate.INSTANCE::getChangelog);
+
+        graph.run();
+
+        StartupGraph preinitGraph = this.preinitGraph;
+        this.preinitGraph = null;
+        Multithreading.runAsync(() -> {
+            if (preinitGraph != null) {
+                preinitGraph.awaitAll();
+            }
+            graph.awaitAll();
+            writeStartupTrace();
+        });
+    }
+
+    private void writeStartupTrace() {
+        Path path = baseDir.toPath().resolve("startup-trace.json");
+        try {
+            startupTrace.writeChromeTrace(path);
+        } catch (Exception e) {
+            logger.warn("Failed to write startup trace:", e);
+            return;
+        }
+        List<StartupTrace.Event> phases = startupTrace.longest(StartupTrace.Category.Phase, 2);
+        long mainThreadNanos = phases.stream().mapToLong(StartupTrace.Event::getDurationNanos).sum();
+        logger.info("Startup took {}ms on the main thread, {}ms of which were spent waiting on background tasks. See {} for details.",
+            TimeUnit.NANOSECONDS.toMillis(mainThreadNanos),
+            TimeUnit.NANOSECONDS.toMillis(startupTrace.blockedNanos()),
+            path);
+    }
+
+    private void checkOldModCore() {
         EssentialConfig essentialConfig = EssentialConfig.INSTANCE;
         try {
             if (Sk1erModUtils.isOldModCorePresent() && essentialConfig.getModCoreWarning()) {
@@ -283,17 +368,9 @@ public class Essential implements EssentialAPI {
         } catch (Exception ignored) {
             // it's *probably* fine, so we can keep going.
         }
+    }
 
-        EventHandler.init();
-        StencilEffect.Companion.enableStencil();
-        McEssentialConfig.INSTANCE.hookUp();
-        //#if MC<11400
-        createStacktraceDeobfuscator();
-        //#endif
-
-        imageCache = new FileImageCache(new File(getBaseDir(), "image-cache"), 1, TimeUnit.HOURS, true);
-        PlayerSkinLookup.INSTANCE.loadCache(getBaseDir().toPath().resolve("cache"));
-
+    private void registerListeners() {
         EVENT_BUS.register(EssentialCommandRegistry.INSTANCE);
         getKeybindingRegistry().refreshBinds(); // config is ready now, time to refresh which bindings we actually want
         registerListener(getKeybindingRegistry());
@@ -321,25 +398,10 @@ public class Essential implements EssentialAPI {
             connectionManager.getSubscriptionManager().getSubscriptionsAndSelf(),
             connectionManager.getCosmeticsManager().getInfraEquippedOutfitsManager()
         ));
+    }
 
-        Net.INSTANCE.init();
-        Multithreading.runAsync(() -> {
-            try {
-                EssentialContainerUtil.updateStage1IfOutdated(UMinecraft.getMinecraft().mcDataDir.toPath());
-            } catch (Exception e) {
-                logger.error("Failed to update loader stage1! Auto-update may not behave as expected!", e);
-            }
-        });
-
-        registerListener(Notifications.INSTANCE);
-        registerListener(new ReAuthChecker());
-        registerListener(UI3DPlayer.Companion);
-        if (OnboardingData.hasAcceptedTos()) {
-            EVENT_BUS.post(new TosAcceptedEvent());
-        }
-        WindowTitleManager.INSTANCE.register();
-
-        //#if MC<11400
+    //#if MC<11400
+    private void disablePatcherScreenshotManager() {
         // Patcher screenshot manager conflicts with ours, so we disable it
         ModContainer patcher = Loader.instance().getIndexedModList().get("patcher");
         if (patcher != null) {
@@ -354,8 +416,10 @@ public class Essential implements EssentialAPI {
                 logger.error("Failed to disable Patcher screenshot manager", e);
             }
         }
-        //#endif
+    }
+    //#endif
 
+    private void preloadLanClasses() {
         // Workaround for https://github.com/McModLauncher/securejarhandler/issues/37
         // For the specific case where MC interrupts its lan server broadcast listener thread after it found its first
         // broadcast (net.minecraft.client.server.LanServerDetection.LanServerList.addServer).
@@ -372,9 +436,9 @@ public class Essential implements EssentialAPI {
         } catch (Throwable e) {
             e.printStackTrace();
         }
+    }
 
-        EssentialChannelHandler.registerEssentialChannel();
-
+    private void registerResourceReloadListener() {
         // NeoForge enforces use of their event as of 1.21.4 (specifically 21.4.84-beta), so we need to use it when it's
         // available
         // See https://github.com/neoforged/NeoForge/pull/1915
@@ -386,9 +450,6 @@ public class Essential implements EssentialAPI {
             ((SimpleReloadableResourceManager) UMinecraft.getMinecraft().getResourceManager())
                 .registerReloadListener(ResourceManagerUtil.INSTANCE);
         }
-
-        // Fetch update changelog now so it is preloaded for later use
-        AutoUpdate.INSTANCE.getChangelog();
     }
 
     private File createEssentialDir() {
@@ -423,16 +484,12 @@ public class Essential implements EssentialAPI {
 
     @SuppressWarnings("ResultOfMethodCallIgnored")
     private void createStacktraceDeobfuscator() {
-        Multithreading.runAsync(() -> {
-            File mappingsFolder = new File(baseDir, "mappings");
-            if (!mappingsFolder.exists()) mappingsFolder.mkdir();
-
-            File mappings = new File(mappingsFolder, "mappings-" + UMinecraft.getMinecraft().getVersion() + ".csv");
-            logger.info((mappings.exists() ? "Found MCP method mappings: " : "Downloading MCP method mappings to: ") + mappings.getName());
-            StacktraceDeobfuscator.setup(mappings);
-        });
-
+        File mappingsFolder = new File(baseDir, "mappings");
+        if (!mappingsFolder.exists()) mappingsFolder.mkdir();
 
+        File mappings = new File(mappingsFolder, "mappings-" + UMinecraft.getMinecraft().getVersion() + ".csv");
+        logger.info((mappings.exists() ? "Found MCP method mappings: " : "Downloading MCP method mappings to: ") + mappings.getName());
+        StacktraceDeobfuscator.setup(mappings);
     }
 
     private static InvokerType determineBestInvokerType() {
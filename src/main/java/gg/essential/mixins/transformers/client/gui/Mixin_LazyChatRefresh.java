@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.mixins.transformers.client.gui;
+
+import com.llamalad7.mixinextras.injector.ModifyExpressionValue;
+import net.minecraft.client.gui.GuiNewChat;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.List;
+
+/**
+ * With {@link Mixin_RemoveChatLimit}, the chat history may contain tens of thousands of messages, all of which vanilla
+ * re-wraps whenever the chat is refreshed (e.g. on resize, or when the chat scale or width is changed).
+ * <p>
+ * This mixin limits such refreshes to only the most recent messages, enough to fill the visible window plus some
+ * margin. Older messages are only wrapped once the user actually scrolls close to the top of what has been wrapped so
+ * far, in exponentially growing chunks, so scrolling through the whole history is still linear overall.
+ */
+@Mixin(GuiNewChat.class)
+public abstract class Mixin_LazyChatRefresh {
+
+    @Unique
+    private static final int INITIAL_REFRESH_LIMIT = 100;
+
+    @Shadow @Final
+    private List<?> chatLines;
+
+    @Shadow @Final
+    private List<?> drawnChatLines;
+
+    @Shadow
+    private int scrollPos;
+
+    @Shadow
+    public abstract void refreshChat();
+
+    @Shadow
+    public abstract int getLineCount();
+
+    /** How many of the most recent messages the next refresh should wrap. */
+    @Unique
+    private int refreshLimit = INITIAL_REFRESH_LIMIT;
+
+    /**
+     * The oldest message which was wrapped by the last refresh, or {@code null} if all messages were wrapped.
+     * Tracked by identity rather than by count because new messages are added and the oldest ones dropped (once the
+     * history limit is reached) in between refreshes.
+     */
+    @Unique
+    private Object oldestWrappedMessage;
+
+    @Unique
+    private boolean wrapOlderMessages;
+
+    @ModifyExpressionValue(method = "refreshChat", at = @At(value = "INVOKE", target = "Ljava/util/List;size()I"))
+    private int essential$limitRefreshedMessages(int size) {
+        // Vanilla iterates from `size - 1` down to `0`, i.e. from oldest to newest, so this skips the oldest messages
+        return Math.min(size, refreshLimit);
+    }
+
+    @Inject(method = "refreshChat", at = @At("RETURN"))
+    private void essential$trackUnwrappedMessages(CallbackInfo ci) {
+        oldestWrappedMessage = chatLines.size() > refreshLimit ? chatLines.get(refreshLimit - 1) : null;
+        refreshLimit = INITIAL_REFRESH_LIMIT;
+    }
+
+    /** Returns how many of the oldest messages are currently not wrapped. */
+    @Unique
+    private int essential$unwrappedMessages() {
+        if (oldestWrappedMessage == null) {
+            return 0;
+        }
+        // Searching from the end because this is most likely to be close to it.
+        // Must compare by identity, not `equals`, because on newer versions lines are records and identical messages
+        // sent multiple times would be equal.
+        int index = -1;
+        for (int i = chatLines.size() - 1; i >= 0; i--) {
+            if (chatLines.get(i) == oldestWrappedMessage) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1) {
+            // All unwrapped messages (and some wrapped ones) have since been dropped from the history
+            oldestWrappedMessage = null;
+            return 0;
+        }
+        return chatLines.size() - 1 - index;
+    }
+
+    @Inject(method = "scroll", at = @At("HEAD"))
+    private void essential$checkScrolledNearTop(int amount, CallbackInfo ci) {
+        if (scrollPos + amount + getLineCount() * 2 >= drawnChatLines.size() && essential$unwrappedMessages() > 0) {
+            // Vanilla may also call `scroll` from within `setChatLine`, where we must not refresh, so we'll do it on
+            // the next frame instead.
+            wrapOlderMessages = true;
+        }
+    }
+
+    @Inject(method = "drawChat", at = @At("HEAD"))
+    private void essential$wrapOlderMessages(CallbackInfo ci) {
+        if (!wrapOlderMessages) {
+            return;
+        }
+        wrapOlderMessages = false;
+
+        int unwrapped = essential$unwrappedMessages();
+        if (unwrapped == 0) {
+            return;
+        }
+
+        int wrapped = chatLines.size() - unwrapped;
+        int scroll = scrollPos;
+        refreshLimit = Math.max(wrapped * 2, INITIAL_REFRESH_LIMIT);
+        refreshChat();
+        // Older messages are added above the existing ones, so the same scroll position still shows the same lines
+        scrollPos = scroll;
+    }
+}
@@ -61,7 +61,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -69,11 +70,20 @@ import static gg.essential.util.ExtensionsKt.isAnnouncement;
 
 public class ChatManager extends StateCallbackManager<IMessengerManager> implements NetworkedManager {
 
+    /**
+     * Maximum number of messages kept per channel. Once exceeded by newly received messages, the oldest ones are
+     * dropped and have to be requested again via {@link #retrieveMessageHistory} if the user scrolls back to them.
+     */
+    private static final int MAX_CACHED_MESSAGES_PER_CHANNEL = 500;
+
     @NotNull
     private final Map<Long, Channel> channels = Maps.newConcurrentMap();
 
+    /**
+     * Messages of each channel, ordered by id (and therefore by age, oldest first)
+     */
     @NotNull
-    private final Map<Long, ConcurrentMap<Long, Message>> channelMessages = Maps.newConcurrentMap();
+    private final Map<Long, ConcurrentNavigableMap<Long, Message>> channelMessages = Maps.newConcurrentMap();
 
     @NotNull
     private final MutableState<MutableTrackedList<Long>> channelsWithMessagesListState = ListKt.mutableListStateOf();
@@ -264,7 +274,7 @@ public class ChatManager extends StateCallbackManager<IMessengerManager> impleme
     @Nullable
     public Channel removeChannel(final long id) {
         Channel channel = this.channels.remove(id);
-        ConcurrentMap<Long, Message> removed = this.channelMessages.remove(id);
+        this.channelMessages.remove(id);
         updateChannelListState();
         if (channel != null) {
             for (IMessengerManager iMessengerManager : getCallbacks()) {
@@ -301,9 +311,13 @@ public class ChatManager extends StateCallbackManager<IMessengerManager> impleme
         this.clearChannels();
     }
 
+    /**
+     * Returns the loaded messages of the given channel, ordered by id (oldest first), or null if no messages have been
+     * loaded for the channel yet.
+     */
     @Nullable
     public Map<Long, Message> getMessages(final long channelId) {
-        ConcurrentMap<Long, Message> messageMap = this.channelMessages.get(channelId);
+        ConcurrentNavigableMap<Long, Message> messageMap = this.channelMessages.get(channelId);
         return messageMap != null ? Collections.unmodifiableMap(messageMap) : null;
     }
 
@@ -319,14 +333,21 @@ public class ChatManager extends StateCallbackManager<IMessengerManager> impleme
             return false;
         }
 
-        ConcurrentMap<Long, Message> map = channelMessages.get(channelId);
+        ConcurrentNavigableMap<Long, Message> map = channelMessages.get(channelId);
         if (map == null) {
-            map = Maps.newConcurrentMap();
+            map = new ConcurrentSkipListMap<>();
             channelMessages.put(channelId, map);
             this.updateChannelListState();
         }
         boolean previousMessageExisted = map.put(message.getId(), message) != null; // Message was edited if it already existed
 
+        // Only trim on live messages, trimming history responses would immediately drop what was just requested
+        if (!isFromHistoryRequest) {
+            for (int excess = map.size() - MAX_CACHED_MESSAGES_PER_CHANNEL; excess > 0; excess--) {
+                map.pollFirstEntry();
+            }
+        }
+
         for (IMessengerManager iMessengerManager : getCallbacks()) {
             iMessengerManager.messageReceived(channel, message);
         }
@@ -369,7 +390,7 @@ public class ChatManager extends StateCallbackManager<IMessengerManager> impleme
     }
 
     public void removeMessage(final long channelId, final long messageId) {
-        ConcurrentMap<Long, Message> channelMessages = this.channelMessages.get(channelId);
+        ConcurrentNavigableMap<Long, Message> channelMessages = this.channelMessages.get(channelId);
         if (channelMessages != null) {
             Message message = channelMessages.remove(messageId);
             if (message != null) {
@@ -585,7 +606,7 @@ public class ChatManager extends StateCallbackManager<IMessengerManager> impleme
                 boolean isEmpty = ((ServerChatChannelMessagePacket) packet).getMessages().length == 0;
                 if (before == null && after == null && isEmpty) {
                     // This channel has not seen any messages yet, we can still cache that very fact though.
-                    this.channelMessages.putIfAbsent(channelId, Maps.newConcurrentMap());
+                    this.channelMessages.putIfAbsent(channelId, new ConcurrentSkipListMap<>());
                     this.updateChannelListState();
                 }
             }
@@ -742,7 +763,7 @@ public class ChatManager extends StateCallbackManager<IMessengerManager> impleme
     }
 
     public @Nullable Message getMessageById(long channelId, long messageId) {
-        ConcurrentMap<Long, Message> messages = channelMessages.get(channelId);
+        ConcurrentNavigableMap<Long, Message> messages = channelMessages.get(channelId);
         if (messages == null) {
             return null;
         }
@@ -752,12 +773,13 @@ public class ChatManager extends StateCallbackManager<IMessengerManager> impleme
     /**
      * Returns the ID of the oldest loaded message in a channel or null if no messages are available
      */
-    private @Nullable Long getOldestLoadedMessageId(long channel) {
-        Map<Long, Message> messages = getMessages(channel);
+    public @Nullable Long getOldestLoadedMessageId(long channel) {
+        ConcurrentNavigableMap<Long, Message> messages = channelMessages.get(channel);
         if (messages == null) {
             return null;
         }
-        return messages.values().stream().min(Comparator.comparingLong(Message::getId)).map(Message::getId).orElse(null);
+        Map.Entry<Long, Message> oldest = messages.firstEntry();
+        return oldest != null ? oldest.getKey() : null;
     }
 
     /**
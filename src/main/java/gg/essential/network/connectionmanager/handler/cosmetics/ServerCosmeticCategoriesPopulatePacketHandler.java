@@ -12,7 +12,6 @@
 package gg.essential.network.connectionmanager.handler.cosmetics;
 
 import gg.essential.connectionmanager.common.packet.cosmetic.categories.ServerCosmeticCategoriesPopulatePacket;
-import gg.essential.cosmetics.model.CosmeticCategory;
 import gg.essential.network.connectionmanager.ConnectionManager;
 import gg.essential.network.connectionmanager.cosmetics.CosmeticsManager;
 import gg.essential.network.connectionmanager.handler.PacketHandler;
@@ -27,8 +26,6 @@ public class ServerCosmeticCategoriesPopulatePacketHandler extends PacketHandler
 
     @Override
     protected void onHandle(@NotNull ConnectionManager connectionManager, @NotNull ServerCosmeticCategoriesPopulatePacket packet) {
-        for (CosmeticCategory category : packet.getCategories()) {
-            cosmeticsManager.getInfraCosmeticsData().addCategory(category);
-        }
+        cosmeticsManager.getInfraCosmeticsData().addCategories(packet.getCategories());
     }
 }
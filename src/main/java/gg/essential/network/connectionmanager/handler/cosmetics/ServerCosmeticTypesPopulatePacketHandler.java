@@ -11,7 +11,6 @@
  */
 package gg.essential.network.connectionmanager.handler.cosmetics;
 
-import gg.essential.cosmetics.model.CosmeticType;
 import gg.essential.connectionmanager.common.packet.cosmetic.ServerCosmeticTypesPopulatePacket;
 import gg.essential.network.connectionmanager.ConnectionManager;
 import gg.essential.network.connectionmanager.handler.PacketHandler;
@@ -21,9 +20,7 @@ public class ServerCosmeticTypesPopulatePacketHandler extends PacketHandler<Serv
 
     @Override
     protected void onHandle(@NotNull final ConnectionManager connectionManager, @NotNull final ServerCosmeticTypesPopulatePacket packet) {
-        for (@NotNull final CosmeticType cosmeticType : packet.getCosmeticTypes()) {
-            connectionManager.getCosmeticsManager().getInfraCosmeticsData().addType(cosmeticType);
-        }
+        connectionManager.getCosmeticsManager().getInfraCosmeticsData().addTypes(packet.getCosmeticTypes());
     }
 
 }
@@ -12,7 +12,6 @@
 package gg.essential.network.connectionmanager.handler.wardrobe;
 
 import gg.essential.connectionmanager.common.packet.wardrobe.ServerWardrobeStoreBundlePacket;
-import gg.essential.cosmetics.model.CosmeticStoreBundle;
 import gg.essential.network.connectionmanager.ConnectionManager;
 import gg.essential.network.connectionmanager.cosmetics.CosmeticsManager;
 import gg.essential.network.connectionmanager.handler.PacketHandler;
@@ -24,8 +23,6 @@ public class ServerWardrobeStoreBundlePacketHandler extends PacketHandler<Server
     protected void onHandle(@NotNull final ConnectionManager connectionManager, @NotNull final ServerWardrobeStoreBundlePacket packet) {
         final CosmeticsManager cosmeticsManager = connectionManager.getCosmeticsManager();
 
-        for (@NotNull final CosmeticStoreBundle bundle : packet.getStoreBundles()) {
-            cosmeticsManager.getInfraCosmeticsData().addBundle(bundle);
-        }
+        cosmeticsManager.getInfraCosmeticsData().addBundles(packet.getStoreBundles());
     }
 }
@@ -45,6 +45,7 @@ import gg.essential.gui.screenshot.concurrent.PrioritizedCallable;
 import gg.essential.gui.screenshot.concurrent.PriorityThreadPoolExecutor;
 import gg.essential.gui.screenshot.downsampling.PixelBuffer;
 import gg.essential.gui.screenshot.handler.ScreenshotChecksumManager;
+import gg.essential.gui.screenshot.handler.ScreenshotIndexer;
 import gg.essential.gui.screenshot.handler.ScreenshotMetadataManager;
 import gg.essential.gui.screenshot.providers.FileCachedWindowedImageProvider;
 import gg.essential.handlers.io.DirectoryWatcher;
@@ -95,6 +96,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -124,11 +126,14 @@ public class ScreenshotManager implements NetworkedManager, IScreenshotManager {
     private final ConnectionManager connectionManager;
     private final ScreenshotMetadataManager screenshotMetadataManager;
     private final Set<String> screenshotFiles = Sets.newConcurrentHashSet();
+    /** Files listed by the initial index which have not yet been added to {@link #localScreenshots}. */
+    private final Set<String> pendingIndexFiles = Sets.newConcurrentHashSet();
 
     private final PriorityThreadPoolExecutor backgroundExecutor = new PriorityThreadPoolExecutor(1);
     private final FileCachedWindowedImageProvider minResolutionProvider;
 
     private final ScreenshotChecksumManager screenshotChecksumManager;
+    private final ScreenshotIndexer screenshotIndexer;
 
     private final DirectoryWatcher screenshotFolderWatcher;
 
@@ -152,8 +157,9 @@ public class ScreenshotManager implements NetworkedManager, IScreenshotManager {
         nativeImageReader = lwjgl3.get(NativeImageReader.class);
         screenshotChecksumManager = new ScreenshotChecksumManager(HelpersKt.getScreenshotFolder(), new File(baseDir, "screenshot-checksum-caches.json"));
         screenshotMetadataManager = new ScreenshotMetadataManager(metadataFolder, screenshotChecksumManager);
+        screenshotIndexer = new ScreenshotIndexer(screenshotChecksumManager, screenshotMetadataManager);
         minResolutionProvider = ScreenshotProviderManager.Companion.createFileCachedBicubicProvider(ScreenshotProviderManager.minResolutionTargetResolution, backgroundExecutor, UnpooledByteBufAllocator.DEFAULT, baseDir.toPath(), nativeImageReader, true);
-        Multithreading.runAsync(this::preloadScreenshots);
+        preloadScreenshots();
         screenshotFolderWatcher = new DirectoryWatcher(HelpersKt.getScreenshotFolder().toPath(), false, 1, TimeUnit.SECONDS);
         screenshotFolderWatcher.onBatchUpdate(this::flushFilesystemOperationsQueue);
 
@@ -179,23 +185,32 @@ public class ScreenshotManager implements NetworkedManager, IScreenshotManager {
 
     private void preloadScreenshots() {
         // Primes the cache with all screenshot metadata
-        File[] files = HelpersKt.getScreenshotFolder().listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (!fileNameMatchesImage(file.getName())) {
-                    continue;
+        screenshotIndexer.index(HelpersKt.getScreenshotFolder().toPath(), this::fileNameMatchesImage, name -> {
+            // Files are known (e.g. to getOrderedPaths) as soon as they are listed, their checksums follow later.
+            // May have already been added by the directory watcher or a newly taken screenshot.
+            if (screenshotFiles.add(name)) {
+                pendingIndexFiles.add(name);
+            }
+            return Unit.INSTANCE;
+        }, batch -> {
+            List<Pair<String, String>> added = new ArrayList<>(batch.size());
+            for (Pair<String, String> entry : batch) {
+                // May have been added by the directory watcher or a newly taken screenshot, or deleted, in the meantime
+                if (pendingIndexFiles.remove(entry.getFirst())) {
+                    added.add(entry);
+                    precompute(new File(HelpersKt.getScreenshotFolder(), entry.getFirst()));
                 }
-
-                screenshotFiles.add(file.getName());
-                precompute(file);
-                getScreenshotMetadataManager().getMetadata(file);
-
-                String checksum = screenshotChecksumManager.get(file);
-                if (checksum == null) continue;
-                ExtensionsKt.getExecutor(Minecraft.getMinecraft()).execute(() ->
-                    localScreenshots.set(list -> list.add(new Pair<>(file.getName(), checksum))));
             }
-        }
+            if (!added.isEmpty()) {
+                localScreenshots.set(list -> list.addAll(added));
+            }
+            return Unit.INSTANCE;
+        });
+    }
+
+    @Override
+    public @NotNull State<ScreenshotIndexer.Progress> getIndexingProgress() {
+        return screenshotIndexer.getProgress();
     }
 
     private boolean fileNameMatchesImage(String fileName) {
@@ -533,6 +548,7 @@ public class ScreenshotManager implements NetworkedManager, IScreenshotManager {
         screenshotChecksumManager.set(imgFile, metadata.getChecksum());
         screenshotMetadataManager.updateMetadata(metadata);
         screenshotFiles.add(imgFile.getName());
+        pendingIndexFiles.remove(imgFile.getName());
         ExtensionsKt.getExecutor(Minecraft.getMinecraft()).execute(() ->
             localScreenshots.set(list -> list.add(new Pair<>(imgFile.getName(), metadata.getChecksum()))));
         precompute(imgFile);
@@ -654,7 +670,7 @@ public class ScreenshotManager implements NetworkedManager, IScreenshotManager {
             }
             switch (event.getEventType()) {
                 case CREATE: {
-                    if (screenshotFiles.add(name)) {
+                    if (screenshotFiles.add(name) || pendingIndexFiles.remove(name)) {
                         String checksum = screenshotChecksumManager.get(event.getPath().toFile());
                         list = list.add(new Pair<>(name, checksum));
                     }
@@ -708,6 +724,7 @@ public class ScreenshotManager implements NetworkedManager, IScreenshotManager {
         }
 
         boolean mutated = screenshotFiles.remove(file.getName());
+        pendingIndexFiles.remove(file.getName());
         if (mutated) {
             MutableTrackedList<Pair<String, String>> list = localScreenshots.getUntracked();
             for (int i = 0; i < list.size(); i++) {
@@ -799,6 +816,7 @@ public class ScreenshotManager implements NetworkedManager, IScreenshotManager {
             ));
 
             screenshotFiles.add(output.getName());
+            pendingIndexFiles.remove(output.getName());
             // Precomputing not done here because the UI is already open and will it will generate what it needs as it needs it
 
             ExtensionsKt.getExecutor(Minecraft.getMinecraft()).execute(() -> {
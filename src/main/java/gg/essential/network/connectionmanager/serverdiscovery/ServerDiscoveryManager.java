@@ -16,6 +16,7 @@ import gg.essential.connectionmanager.common.packet.serverdiscovery.ClientServer
 import gg.essential.connectionmanager.common.packet.serverdiscovery.ServerServerDiscoveryPopulatePacket;
 import gg.essential.network.connectionmanager.ConnectionManager;
 import gg.essential.network.connectionmanager.NetworkedManager;
+import gg.essential.network.connectionmanager.knownservers.ServerAddressMatcher;
 import gg.essential.network.connectionmanager.serverdiscovery.handler.ServerServerDiscoveryPopulatePacketHandler;
 import gg.essential.serverdiscovery.model.ServerDiscovery;
 import gg.essential.util.MinecraftUtils;
@@ -23,14 +24,12 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 public class ServerDiscoveryManager implements NetworkedManager, Iterable<ServerDiscovery> {
 
     @NotNull
     private final Map<String, ServerDiscovery> servers = Maps.newConcurrentMap();
-    private Map<String, ServerDiscovery> serversByAddress;
-    private Map<Pattern, ServerDiscovery> serversByRegexAddress;
+    private ServerAddressMatcher<ServerDiscovery> serversByAddress;
     private final ConnectionManager connectionManager;
 
     public ServerDiscoveryManager(@NotNull final ConnectionManager connectionManager) {
@@ -57,7 +56,6 @@ public class ServerDiscoveryManager implements NetworkedManager, Iterable<Server
     public void addServer(@NotNull final ServerDiscovery serverDiscovery) {
         this.servers.put(serverDiscovery.getId(), serverDiscovery);
         this.serversByAddress = null;
-        this.serversByRegexAddress = null;
     }
 
     @NotNull
@@ -68,32 +66,12 @@ public class ServerDiscoveryManager implements NetworkedManager, Iterable<Server
 
     @Nullable
     public ServerDiscovery findServerByAddress(final String address) {
-        if (this.serversByAddress == null || this.serversByRegexAddress == null) {
-            this.serversByAddress = Maps.newHashMap();
-            this.serversByRegexAddress = Maps.newHashMap();
-            for (ServerDiscovery server : this.servers.values()) {
-                for (String serverAddress : server.getAddresses()) {
-                    if (serverAddress.startsWith("^") && serverAddress.endsWith("$")) {
-                        this.serversByRegexAddress.put(Pattern.compile(serverAddress), server);
-                    } else {
-                        this.serversByAddress.put(serverAddress, server);
-                    }
-                }
-            }
+        ServerAddressMatcher<ServerDiscovery> serversByAddress = this.serversByAddress;
+        if (serversByAddress == null) {
+            serversByAddress = new ServerAddressMatcher<>(this.servers.values(), ServerDiscovery::getAddresses);
+            this.serversByAddress = serversByAddress;
         }
-
-        ServerDiscovery exactMatch = this.serversByAddress.get(address);
-        if (exactMatch != null) {
-            return exactMatch;
-        }
-
-        for (Map.Entry<Pattern, ServerDiscovery> entry : this.serversByRegexAddress.entrySet()) {
-            if (entry.getKey().matcher(address).matches()) {
-                return entry.getValue();
-            }
-        }
-
-        return null;
+        return serversByAddress.find(address);
     }
 
     @NotNull
@@ -112,7 +90,6 @@ public class ServerDiscoveryManager implements NetworkedManager, Iterable<Server
     public void resetState() {
         this.servers.clear();
         this.serversByAddress = null;
-        this.serversByRegexAddress = null;
     }
 
 }
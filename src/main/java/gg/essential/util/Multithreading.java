@@ -19,16 +19,23 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static gg.essential.util.ExtensionsKt.getExecutor;
 
 
+/**
+ * Legacy entry points for running work off the main thread.
+ * Background work runs on the {@link EssentialExecutors#getIo() IO lane}, consider picking a more fitting lane from
+ * {@link EssentialExecutors} directly for new code.
+ */
 public class Multithreading {
     private static final AtomicInteger counter = new AtomicInteger(0);
 
-    private static final ScheduledExecutorService RUNNABLE_POOL = Executors.newScheduledThreadPool(10, r ->
-        new Thread(r, "Essential Thread " + counter.incrementAndGet()));
+    // Only used for timing, scheduled tasks are handed off to the appropriate executor once due. Tasks scheduled
+    // directly on it (see getScheduledPool) must therefore be short.
+    private static final ScheduledExecutorService RUNNABLE_POOL = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "Essential Scheduler " + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public static ThreadPoolExecutor POOL = new ThreadPoolExecutor(10, 30,
-            0L, TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(),
-            r -> new Thread(r, "Essential Thread " + counter.incrementAndGet()));
+    public static final Executor POOL = EssentialExecutors.getIo();
 
     /**
      * @deprecated This method executes the passed runnable on a background thread.
@@ -42,7 +49,7 @@ public class Multithreading {
     }
 
     public static ScheduledFuture<?> scheduleOnBackgroundThread(Runnable r, long delay, TimeUnit unit) {
-        return RUNNABLE_POOL.schedule(r, delay, unit);
+        return RUNNABLE_POOL.schedule(() -> POOL.execute(r), delay, unit);
     }
 
     public static ScheduledFuture<?> scheduleOnMainThread(Runnable r, long delay, TimeUnit unit) {
@@ -54,11 +61,11 @@ public class Multithreading {
     }
 
     public static Future<?> submit(Runnable runnable) {
-        return POOL.submit(runnable);
+        return EssentialExecutors.getIo().submit(runnable);
     }
 
-    public static ThreadPoolExecutor pool = POOL;
-    public static ThreadPoolExecutor getPool() {
+    public static Executor pool = POOL;
+    public static Executor getPool() {
         return pool;
     }
 
@@ -67,5 +74,3 @@ public class Multithreading {
         return scheduledPool;
     }
 }
-
-
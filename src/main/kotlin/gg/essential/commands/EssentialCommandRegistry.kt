@@ -11,6 +11,7 @@
  */
 package gg.essential.commands
 
+import gg.essential.Essential
 import gg.essential.api.commands.ArgumentParser
 import gg.essential.api.commands.Command
 import gg.essential.api.commands.CommandRegistry
@@ -47,6 +48,8 @@ object EssentialCommandRegistry : CommandRegistry {
         Multithreading.runAsync {
             // Default Essential commands
             registerCommand(CommandConfig())
+            Essential.EVENT_BUS.profiler?.let { registerCommand(CommandEventBus(it)) }
+            registerCommand(CommandExecutors())
             checkMiniCommands()
         }
     }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.commands.impl
+
+import gg.essential.api.commands.Command
+import gg.essential.api.commands.DefaultHandler
+import gg.essential.api.commands.SubCommand
+import gg.essential.util.EventBusProfiler
+import gg.essential.util.MinecraftUtils
+
+/**
+ * Shows which event bus subscribers take the most time. Only registered if profiling is enabled, see [EventBusProfiler].
+ */
+class CommandEventBus(private val profiler: EventBusProfiler) : Command("essentialeventbus", hideFromAutocomplete = true) {
+
+    @DefaultHandler
+    fun handle() {
+        val snapshot = profiler.snapshot().filter { it.calls > 0 }
+        if (snapshot.isEmpty()) {
+            MinecraftUtils.sendMessage("No events have been recorded yet.")
+            return
+        }
+        MinecraftUtils.sendMessage("Top event bus subscribers by total time:")
+        for (entry in snapshot.take(15)) {
+            MinecraftUtils.sendMessage(
+                "%s: %.1fms total, %d calls, %.1fµs avg, %.1fµs max, %d B/call".format(
+                    entry.name.removePrefix("gg.essential."),
+                    entry.totalNanos / 1_000_000.0,
+                    entry.calls,
+                    entry.averageNanos / 1_000.0,
+                    entry.maxNanos / 1_000.0,
+                    entry.allocatedBytes / entry.calls,
+                )
+            )
+        }
+    }
+
+    @SubCommand("reset", description = "Reset all recorded event bus statistics")
+    fun handleReset() {
+        profiler.reset()
+        MinecraftUtils.sendMessage("Reset event bus statistics.")
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.commands.impl
+
+import gg.essential.api.commands.Command
+import gg.essential.api.commands.DefaultHandler
+import gg.essential.util.EssentialExecutors
+import gg.essential.util.MinecraftUtils
+
+/**
+ * Shows how busy each of the [EssentialExecutors] lanes is and how long tasks had to wait on them.
+ */
+class CommandExecutors : Command("essentialexecutors", hideFromAutocomplete = true) {
+
+    @DefaultHandler
+    fun handle() {
+        for (lane in EssentialExecutors.snapshot()) {
+            MinecraftUtils.sendMessage(
+                "%s: %d/%d active, %d queued (max %d), %d/%d done, %.1fms avg wait, %.1fms max wait".format(
+                    lane.name,
+                    lane.active,
+                    lane.parallelism,
+                    lane.queueDepth,
+                    lane.maxQueueDepth,
+                    lane.completed,
+                    lane.submitted,
+                    lane.averageWaitNanos / 1_000_000.0,
+                    lane.maxWaitNanos / 1_000_000.0,
+                )
+            )
+        }
+    }
+}
@@ -38,7 +38,6 @@ import gg.essential.gui.layoutdsl.fillRemainingHeight
 import gg.essential.gui.layoutdsl.fillWidth
 import gg.essential.gui.layoutdsl.floatingBox
 import gg.essential.gui.layoutdsl.height
-import gg.essential.gui.layoutdsl.heightAspect
 import gg.essential.gui.layoutdsl.layout
 import gg.essential.gui.layoutdsl.row
 import gg.essential.gui.layoutdsl.shadow
@@ -47,8 +46,6 @@ import gg.essential.gui.layoutdsl.width
 import gg.essential.gui.screenshot.ScreenshotId
 import gg.essential.gui.screenshot.components.ScreenshotListView
 import gg.essential.gui.screenshot.components.ScreenshotProviderManager
-import gg.essential.gui.screenshot.components.screenshotPadding
-import gg.essential.gui.screenshot.constraints.TileConstraint
 import gg.essential.universal.UKeyboard
 import gg.essential.util.GuiEssentialPlatform.Companion.platform
 import gg.essential.vigilance.utils.onLeftClick
@@ -82,8 +79,7 @@ class ScreenshotPicker(
                 desiredImageSize,
                 screenshotAttachmentManager,
             )
-            item.constraints.width = TileConstraint(numberOfItemsPerRow.toV1(item), screenshotPadding)
-            item(Modifier.heightAspect(9 / 16f))
+            item(Modifier.fillParent())
         }
     }
 
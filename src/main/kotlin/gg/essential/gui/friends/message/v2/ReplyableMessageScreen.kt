@@ -241,7 +241,7 @@ class ReplyableMessageScreen(
         } else if (channelMessages.size < 50) {
             cm.chatManager.retrieveMessageHistory(
                 channel.id,
-                channelMessages.values.minByOrNull { it.id }?.id,
+                cm.chatManager.getOldestLoadedMessageId(channel.id),
                 null,
                 50 - channelMessages.size,
                 null
@@ -401,11 +401,12 @@ class ReplyableMessageScreen(
     }
 
     private fun requestMoreMessages() {
-        val messages = cm.chatManager.getMessages(channel.id) ?: return
-
         cm.chatManager.retrieveMessageHistory(
             channel.id,
-            messages.values.minOfOrNull { it.id } ?: return,
+            // Page from what this screen shows, the chat manager may have dropped older messages since
+            baseMessageListState.getUntracked().minOfOrNull { it.id }
+                ?: cm.chatManager.getOldestLoadedMessageId(channel.id)
+                ?: return,
             null,
         ) {
             if (!it.isPresent) {
@@ -31,7 +31,7 @@ abstract class BasicUserEntry(
     val user: UUID,
     imageFactory: ImageFactory,
     hoverIconColor: Color,
-    sortListener: SortListener
+    sortListener: SortListener?
 ) : UIBlock(EssentialPalette.COMPONENT_BACKGROUND), SearchableItem {
     val usernameState = UUIDUtil.nameState(user, "Loading...")
 
@@ -71,15 +71,20 @@ abstract class BasicUserEntry(
 
     init {
         constrain {
-            y = SiblingConstraint(7f)
+            y = SiblingConstraint(entrySpacing)
             width = 100.percent
-            height = 40.pixels
+            height = entryHeight.pixels
         }
 
         usernameState.onChange(this) {
-            sortListener.sort()
+            sortListener?.sort()
         }
     }
 
     override fun getSearchTag() = usernameState.get()
+
+    companion object {
+        const val entryHeight = 40f
+        const val entrySpacing = 7f
+    }
 }
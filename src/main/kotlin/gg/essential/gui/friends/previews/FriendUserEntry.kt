@@ -28,10 +28,9 @@ import java.util.*
 class FriendUserEntry(
     gui: SocialMenu,
     user: UUID,
-    sortListener: SortListener
-) : BasicUserEntry(user, EssentialPalette.BURGER_7X5, EssentialPalette.TEXT_HIGHLIGHT, sortListener) {
+) : BasicUserEntry(user, EssentialPalette.BURGER_7X5, EssentialPalette.TEXT_HIGHLIGHT, null) {
 
-    private val friendStatus by FriendStatus(user, gui.socialStateManager.statusStates, sortListener).constrain {
+    private val friendStatus by FriendStatus(user, gui.socialStateManager.statusStates).constrain {
         y = SiblingConstraint(5f)
     } childOf textContainer
 
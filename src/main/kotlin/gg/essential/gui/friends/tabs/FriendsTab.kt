@@ -18,16 +18,28 @@ import gg.essential.elementa.constraints.SiblingConstraint
 import gg.essential.elementa.dsl.*
 import gg.essential.elementa.components.*
 import gg.essential.elementa.constraints.CopyConstraintFloat
+import gg.essential.elementa.utils.ObservableList
 import gg.essential.gui.EssentialPalette
 import gg.essential.gui.common.bindChildren
 import gg.essential.gui.common.bindParent
 import gg.essential.gui.common.shadow.EssentialUIText
+import gg.essential.gui.elementa.state.v2.ListState
+import gg.essential.gui.elementa.state.v2.Observer
 import gg.essential.gui.elementa.state.v2.State
+import gg.essential.gui.elementa.state.v2.effect
+import gg.essential.gui.elementa.state.v2.mutableListStateOf
+import gg.essential.gui.elementa.state.v2.mutableStateOf
+import gg.essential.gui.elementa.state.v2.setAll
+import gg.essential.gui.elementa.state.v2.toListState
 import gg.essential.gui.friends.SocialMenu
 import gg.essential.gui.friends.Tab
 import gg.essential.gui.friends.previews.*
 import gg.essential.gui.friends.state.PlayerActivity
+import gg.essential.gui.layoutdsl.layout
+import gg.essential.gui.layoutdsl.virtualList
+import gg.essential.util.UUIDUtil
 import gg.essential.util.scrollGradient
+import java.util.UUID
 import kotlin.Comparator
 
 class FriendsTab(
@@ -48,6 +60,11 @@ class FriendsTab(
         height = FillConstraint(useSiblings = false)
     } childOf this
 
+    /** Lower-case search text, or `null` if not searching. */
+    private val searchText = mutableStateOf<String?>(null)
+
+    private val usernames = mutableMapOf<UUID, State<String>>()
+
     private val pendingSorter: Comparator<UIComponent> = compareBy(
         { (it as PendingUserEntry).incoming },
         {
@@ -56,24 +73,34 @@ class FriendsTab(
         }
     )
 
-    private val friendSorter: Comparator<UIComponent> = compareBy<UIComponent> {
-        val activity = socialStateManager.statusStates.getActivity((it as BasicUserEntry).user)
+    private fun Observer.activityOrder(user: UUID): Long {
+        val activity = socialStateManager.statusStates.getActivityState(user)()
         if (activity.isJoinable()) {
-            return@compareBy 0L
+            return 0L
         }
-        when (activity) {
+        return when (activity) {
             is PlayerActivity.Multiplayer -> 0L
             is PlayerActivity.SPSSession -> if (activity.isJoinable()) 0L else 1L
             is PlayerActivity.OnlineWithDescription -> 1L
             PlayerActivity.Online -> 2L
             is PlayerActivity.Offline -> 3L
         }
-    }.thenBy { (it as BasicUserEntry).usernameState.get() }
-
-    private val blockedSorter: Comparator<UIComponent> = compareBy {
-        (it as BasicUserEntry).usernameState.get()
     }
 
+    private fun Observer.username(user: UUID): String =
+        usernames.getOrPut(user) { UUIDUtil.nameState(user, "Loading...") }()
+
+    /**
+     * Filters [users] by the current search text and sorts them.
+     * Unlike sorting the entry components, this also covers users whose entry has not been built (see [virtualList]).
+     */
+    private fun sortedUsers(users: ListState<UUID>, comparator: Observer.() -> Comparator<UUID>): ListState<UUID> = State {
+        val search = searchText()
+        users()
+            .filter { search == null || search in username(it).lowercase() }
+            .sortedWith(comparator())
+    }.toListState()
+
     private val friendSection by Section(UserEntryType.FRIEND) childOf sectionContainer
     private val firstDivider by createDivider(friendSection) childOf sectionContainer
     private val pendingSection by Section(UserEntryType.PENDING) childOf sectionContainer
@@ -87,9 +114,8 @@ class FriendsTab(
         blockedSection.setupScrollbar(it)
     }
 
-    override val userLists: List<ScrollComponent> = listOf(
-        friendSection.scrollList, pendingSection.scrollList, blockedSection.scrollList
-    )
+    // Friends and blocked players are filtered by [search] directly, see [sortedUsers]
+    override val userLists: List<ScrollComponent> = listOf(pendingSection.scrollList)
 
     private fun createDivider(section: Section): UIBlock {
         return UIBlock(EssentialPalette.COMPONENT_BACKGROUND).constrain {
@@ -104,18 +130,18 @@ class FriendsTab(
     override fun populate() {
         val relationshipStates = socialStateManager.relationshipStates
 
-        friendSection.scrollList.bindChildren(
-            relationshipStates.getObservableFriendList(),
-            comparator = friendSorter
-        ) {
-            FriendUserEntry(gui, it, friendSection)
+        val friends = sortedUsers(relationshipStates.getObservableFriendList().asListState()) {
+            compareBy<UUID> { activityOrder(it) }.thenBy { username(it) }
+        }
+        friendSection.bindUsers(friends) {
+            FriendUserEntry(gui, it)
         }
 
-        blockedSection.scrollList.bindChildren(
-            relationshipStates.getObservableBlockedList(),
-            comparator = blockedSorter
-        ) {
-            BlockedUserEntry(it, gui, blockedSection)
+        val blocked = sortedUsers(relationshipStates.getObservableBlockedList().asListState()) {
+            compareBy { username(it) }
+        }
+        blockedSection.bindUsers(blocked) {
+            BlockedUserEntry(it, gui)
         }
 
         pendingSection.scrollList.bindChildren(
@@ -133,12 +159,25 @@ class FriendsTab(
         }
     }
 
+    override fun search(username: String?) {
+        searchText.set(username?.lowercase())
+        super.search(username)
+    }
+
     override fun sortUserLists() {
-        friendSection.scrollList.sortChildren(friendSorter)
-        blockedSection.scrollList.sortChildren(blockedSorter)
         pendingSection.scrollList.sortChildren(pendingSorter)
     }
 
+    private fun ObservableList<UUID>.asListState(): ListState<UUID> {
+        val state = mutableListStateOf(*toTypedArray())
+        addObserver { _, _ ->
+            Window.enqueueRenderOperation {
+                state.setAll(toList())
+            }
+        }
+        return state
+    }
+
     private inner class Section(private val type: UserEntryType) : UIContainer(), SortListener {
         private val text by EssentialUIText(type.sectionTitle).constrain {
             x = CenterConstraint()
@@ -163,6 +202,26 @@ class FriendsTab(
             }
         }
 
+        /**
+         * Fills this section with an entry for each of the given [users], only building the entries which are currently
+         * visible. Used for the friend and blocked lists, which may be long.
+         * The pending list is kept as regular children because its entries track which requests have been seen for as
+         * long as the menu is open.
+         */
+        fun bindUsers(users: ListState<UUID>, entry: (UUID) -> UIComponent) {
+            scrollList.layout {
+                virtualList(users, BasicUserEntry.entryHeight, BasicUserEntry.entrySpacing, anchorScroll = false) { user ->
+                    entry(user)()
+                }
+            }
+
+            // The list itself is always a child of the scroller, so we need to show the empty text ourselves
+            effect(this) {
+                val empty = users().isEmpty()
+                scrollList.filterChildren { !empty }
+            }
+        }
+
         fun setupScrollbar(parent: UIComponent) {
             val scrollbar = UIBlock(EssentialPalette.SCROLLBAR).constrain {
                 width = 100.percent
@@ -172,12 +231,10 @@ class FriendsTab(
         }
 
         override fun sort() {
-            val filter: java.util.Comparator<UIComponent> = when (type) {
-                UserEntryType.FRIEND -> friendSorter
-                UserEntryType.PENDING -> pendingSorter
-                UserEntryType.BLOCKED -> blockedSorter
+            // Only the pending list holds its entries as direct children, the others are sorted by [sortedUsers]
+            if (type == UserEntryType.PENDING) {
+                scrollList.sortChildren(pendingSorter)
             }
-            scrollList.sortChildren(filter)
         }
 
     }
@@ -53,7 +53,7 @@ abstract class TabComponent(
 
     abstract fun sortUserLists()
 
-    fun search(username: String?) {
+    open fun search(username: String?) {
         val lowerCase = username?.lowercase()
         for (list in userLists) {
             list.filterChildren {
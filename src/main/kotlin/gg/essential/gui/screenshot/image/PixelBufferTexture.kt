@@ -43,23 +43,28 @@ import net.minecraft.client.renderer.texture.AbstractTexture
 
 /**
  * Uploads the contents of a PixelBuffer to OpenGL
+ *
+ * May also be allocated empty (see [allocate]) and filled piece by piece via [uploadRegion], e.g. for a [ThumbnailAtlas]
+ * page.
  */
-class PixelBufferTexture(debugLabel: String, image: PixelBuffer) :
+class PixelBufferTexture(
+    debugLabel: String,
+    val imageWidth: Int,
+    val imageHeight: Int,
+    // Whether this texture's underlying image had an error during loading
+    // To be used in ScreenshotBrowser for alternate behavior
+    val error: Boolean = false,
+) :
 //#if MC<=11202
     AbstractTexture() {
     //#else
     //$$ Texture() {
     //#endif
 
-    // Whether this texture's underlying image had an error during loading
-    // To be used in ScreenshotBrowser for alternate behavior
-    val error = image is ErrorImage
-
-    val imageWidth: Int = image.getWidth()
-    val imageHeight: Int = image.getHeight()
+    constructor(debugLabel: String, image: PixelBuffer) : this(debugLabel, image.getWidth(), image.getHeight(), image is ErrorImage)
 
     init {
-        if(image !is ErrorImage) {
+        if(!error) {
             //#if MC>=12106
             //$$ glTexture = RenderSystem.getDevice().createTexture(debugLabel, GpuTexture.USAGE_TEXTURE_BINDING, TextureFormat.RGBA8, imageWidth, imageHeight, 1, 1)
             //#elseif MC>=12105
@@ -78,55 +83,81 @@ class PixelBufferTexture(debugLabel: String, image: PixelBuffer) :
 
     fun upload(image: PixelBuffer) {
         if (image !is ErrorImage) {
-            // We need to support both uploading on the main thread and in another async context
-            if (UMinecraft.getMinecraft().isCallingFromMinecraftThread) {
-                //#if MC>=12105
-                //$$ GlStateManager._bindTexture((glTexture as GlTexture).glId)
-                //#else
-                GlStateManager.bindTexture(glTextureId)
-                //#endif
-                // Minecraft changes these values in some places, for example NativeImage#upload
-                glPixelStore(GL11.GL_UNPACK_ROW_LENGTH, 0)
-                glPixelStore(GL11.GL_UNPACK_SKIP_ROWS, 0)
-                glPixelStore(GL11.GL_UNPACK_SKIP_PIXELS, 0)
-            } else {
-                //#if MC>=12105
-                //$$ GL11.glBindTexture(GL11.GL_TEXTURE_2D, (glTexture as GlTexture).glId)
-                //#else
-                GL11.glBindTexture(GL11.GL_TEXTURE_2D, glTextureId)
-                //#endif
-            }
-
-            val buffer = image.prepareDirectBuffer()
-            @Suppress("NULLABILITY_MISMATCH_BASED_ON_JAVA_ANNOTATIONS")
-            GL11.glTexImage2D(
-                GL11.GL_TEXTURE_2D,
-                0,
-                GL11.GL_RGBA,
-                imageWidth,
-                imageHeight,
-                0,
-                GL11.GL_RGBA,
-                GL12.GL_UNSIGNED_INT_8_8_8_8_REV,
-                null as IntBuffer?
-            )
-
-            // Extra GL call should not be required but is because of a suspected graphics driver bug
-            // This acts as a workaround fix for the texture not uploading and rendering correctly
-            GL11.glTexSubImage2D(
-                GL11.GL_TEXTURE_2D,
-                0,
-                0,
-                0,
-                imageWidth,
-                imageHeight,
-                GL11.GL_RGBA,
-                GL12.GL_UNSIGNED_INT_8_8_8_8_REV,
-                buffer
-            )
-
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR)
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR)
+            allocate()
+            uploadRegion(image, 0, 0)
+        }
+    }
+
+    /**
+     * Allocates the (uninitialized) storage for this texture and sets up its filtering.
+     */
+    fun allocate() {
+        if (error) {
+            return
+        }
+        bind()
+
+        @Suppress("NULLABILITY_MISMATCH_BASED_ON_JAVA_ANNOTATIONS")
+        GL11.glTexImage2D(
+            GL11.GL_TEXTURE_2D,
+            0,
+            GL11.GL_RGBA,
+            imageWidth,
+            imageHeight,
+            0,
+            GL11.GL_RGBA,
+            GL12.GL_UNSIGNED_INT_8_8_8_8_REV,
+            null as IntBuffer?
+        )
+
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR)
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR)
+    }
+
+    /**
+     * Uploads the given [image] into the region of this texture starting at [x], [y].
+     * The texture must have been [allocate]d before.
+     */
+    fun uploadRegion(image: PixelBuffer, x: Int, y: Int) {
+        if (error || image is ErrorImage) {
+            return
+        }
+        bind()
+
+        // Extra sub-image call (rather than passing the data to glTexImage2D directly) should not be required but is
+        // because of a suspected graphics driver bug.
+        // This acts as a workaround fix for the texture not uploading and rendering correctly
+        GL11.glTexSubImage2D(
+            GL11.GL_TEXTURE_2D,
+            0,
+            x,
+            y,
+            image.getWidth(),
+            image.getHeight(),
+            GL11.GL_RGBA,
+            GL12.GL_UNSIGNED_INT_8_8_8_8_REV,
+            image.prepareDirectBuffer()
+        )
+    }
+
+    private fun bind() {
+        // We need to support both uploading on the main thread and in another async context
+        if (UMinecraft.getMinecraft().isCallingFromMinecraftThread) {
+            //#if MC>=12105
+            //$$ GlStateManager._bindTexture((glTexture as GlTexture).glId)
+            //#else
+            GlStateManager.bindTexture(glTextureId)
+            //#endif
+            // Minecraft changes these values in some places, for example NativeImage#upload
+            glPixelStore(GL11.GL_UNPACK_ROW_LENGTH, 0)
+            glPixelStore(GL11.GL_UNPACK_SKIP_ROWS, 0)
+            glPixelStore(GL11.GL_UNPACK_SKIP_PIXELS, 0)
+        } else {
+            //#if MC>=12105
+            //$$ GL11.glBindTexture(GL11.GL_TEXTURE_2D, (glTexture as GlTexture).glId)
+            //#else
+            GL11.glBindTexture(GL11.GL_TEXTURE_2D, glTextureId)
+            //#endif
         }
     }
 
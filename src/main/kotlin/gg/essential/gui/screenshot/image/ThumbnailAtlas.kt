@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.screenshot.image
+
+import gg.essential.gui.screenshot.downsampling.PixelBuffer
+import gg.essential.gui.screenshot.providers.TextureRegion
+import gg.essential.util.UIdentifier
+import gg.essential.util.toMC
+import net.minecraft.client.Minecraft
+
+/**
+ * A set of fixed-size texture pages, each divided into a grid of equally sized slots, each of which can hold one
+ * thumbnail of at most [slotWidth]x[slotHeight] pixels.
+ *
+ * Pages are only ever allocated, never freed, until the whole atlas is [cleanup]ed. Once [maxPages] pages are in use,
+ * [allocate] will only hand out slots which the caller reclaims.
+ *
+ * Slots must fit into a single page, see [fits].
+ *
+ * This class is not thread safe and must only be used from the main thread. The contents of a slot may however be
+ * uploaded from any thread with a shared GL context (see [Slot.upload]).
+ */
+class ThumbnailAtlas(
+    private val slotWidth: Int,
+    private val slotHeight: Int,
+    private val pageSize: Int = DEFAULT_PAGE_SIZE,
+    private val maxPages: Int = DEFAULT_MAX_PAGES,
+) {
+    init {
+        require(fits(slotWidth, slotHeight, pageSize)) { "Slots of ${slotWidth}x$slotHeight do not fit into $pageSize pages" }
+    }
+
+    private val columns = pageSize / slotWidth
+    private val rows = pageSize / slotHeight
+
+    private val pages = mutableListOf<Page>()
+    private val freeSlots = ArrayDeque<Slot>()
+
+    val slotsPerPage: Int
+        get() = columns * rows
+
+    val pageCount: Int
+        get() = pages.size
+
+    /**
+     * Returns a free slot.
+     * If there are no free slots and the atlas is already at [maxPages], [reclaim] is asked for a slot which is no
+     * longer needed. If it returns `null`, so does this method.
+     */
+    fun allocate(reclaim: () -> Slot?): Slot? {
+        freeSlots.removeFirstOrNull()?.let { return it }
+        if (pages.size >= maxPages) {
+            return reclaim()
+        }
+        val page = newPage()
+        for (index in 1 until slotsPerPage) {
+            freeSlots.addLast(Slot(page, index))
+        }
+        return Slot(page, 0)
+    }
+
+    fun free(slot: Slot) {
+        freeSlots.addLast(slot)
+    }
+
+    fun cleanup() {
+        freeSlots.clear()
+        for (page in pages) {
+            Minecraft.getMinecraft().textureManager.deleteTexture(page.identifier.toMC())
+        }
+        pages.clear()
+    }
+
+    private fun newPage(): Page {
+        val identifier = UIdentifier("essential", "screenshots/atlas/${nextPageId++}")
+        val texture = PixelBufferTexture(identifier.toString(), pageSize, pageSize)
+        texture.allocate()
+        Minecraft.getMinecraft().textureManager.loadTexture(identifier.toMC(), texture)
+        return Page(identifier, texture).also { pages.add(it) }
+    }
+
+    class Page(val identifier: UIdentifier, val texture: PixelBufferTexture)
+
+    inner class Slot(val page: Page, index: Int) {
+        val x = (index % columns) * slotWidth
+        val y = (index / columns) * slotHeight
+
+        /**
+         * Uploads [image] into this slot. The image must not be larger than the slot.
+         * May be called from any thread with a GL context that shares objects with the main context.
+         */
+        fun upload(image: PixelBuffer) {
+            page.texture.uploadRegion(image, x, y)
+        }
+
+        /**
+         * The region of the page covered by an image of the given size in this slot.
+         * Inset by half a texel so linear filtering does not bleed in the neighbouring slots.
+         */
+        fun region(imageWidth: Int, imageHeight: Int): TextureRegion {
+            val size = pageSize.toDouble()
+            return TextureRegion(
+                (x + 0.5) / size,
+                (y + 0.5) / size,
+                (x + imageWidth - 0.5) / size,
+                (y + imageHeight - 0.5) / size,
+            )
+        }
+    }
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 2048
+        const val DEFAULT_MAX_PAGES = 4
+
+        private var nextPageId = 0
+
+        /** Whether slots of the given size fit into pages of the given size. */
+        fun fits(slotWidth: Int, slotHeight: Int, pageSize: Int = DEFAULT_PAGE_SIZE): Boolean =
+            slotWidth in 1..pageSize && slotHeight in 1..pageSize
+    }
+}
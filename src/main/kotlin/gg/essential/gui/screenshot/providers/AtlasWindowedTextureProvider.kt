@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.gui.screenshot.providers
+
+import gg.essential.Essential
+import gg.essential.gui.screenshot.ScreenshotId
+import gg.essential.gui.screenshot.downsampling.ErrorImage
+import gg.essential.gui.screenshot.downsampling.PixelBuffer
+import gg.essential.gui.screenshot.image.ThumbnailAtlas
+import gg.essential.util.UIdentifier
+
+/**
+ * Like [MinecraftWindowedTextureProvider] but instead of creating one texture per screenshot, uploads all screenshots
+ * into the slots of a shared [ThumbnailAtlas], so scrolling through the list does not constantly create and delete
+ * textures, and all visible thumbnails are drawn from one (or a few) textures.
+ *
+ * Screenshots which are no longer requested keep their slot until it is needed for another screenshot (least recently
+ * requested first), so scrolling back and forth does not require any re-uploads either.
+ *
+ * Images provided by the [sourceProvider] must not be larger than [slotWidth]x[slotHeight], larger ones are treated
+ * like errored images. The slot size itself must fit into an atlas page (see [ThumbnailAtlas.fits]).
+ *
+ * If more screenshots are requested at once than the atlas has room for, the excess ones are not loaded until slots
+ * become available again.
+ *
+ * This class is not thread safe and therefore must only ever be used by a single thread.
+ */
+class AtlasWindowedTextureProvider(
+    private val sourceProvider: WindowedImageProvider,
+    private val slotWidth: Int,
+    private val slotHeight: Int,
+) : WindowedTextureProvider {
+
+    // Access order, so the first entry is always the least recently requested one
+    private val loaded = LinkedHashMap<ScreenshotId, Entry>(16, 0.75f, true)
+
+    private val loading = mutableMapOf<ScreenshotId, Entry>()
+
+    override var items: List<ScreenshotId> by sourceProvider::items
+
+    private var textureManager: AsyncTextureManager? = null
+    private var atlas: ThumbnailAtlas? = null
+
+    override fun provide(windows: List<WindowedProvider.Window>, optional: Set<ScreenshotId>): Map<ScreenshotId, RegisteredTexture> {
+        // Avoid creating a new texture manager only to delete it later
+        if (windows.isEmpty() && textureManager == null) {
+            return emptyMap()
+        }
+        val textureManager = textureManager ?: AsyncTextureManager().also { textureManager = it }
+        val atlas = atlas ?: ThumbnailAtlas(slotWidth, slotHeight).also { atlas = it }
+
+        val processed = mutableMapOf<ScreenshotId, RegisteredTexture>()
+
+        val requestedPaths = windows.flatMapTo(mutableSetOf()) { window ->
+            window.range.asSequence().map { items[it] }.filterNot { it in optional }
+        }
+
+        for (path in requestedPaths) {
+            // Note: `get` also marks the entry as most recently used
+            processed[path] = loaded[path]?.texture ?: continue
+        }
+
+        for (entry in sourceProvider.provide(windows, optional + loaded.keys + loading.keys)) {
+            val path = entry.key
+
+            if (path !in loaded && path !in loading && path !in optional) {
+                textureManager.createResource(atlas, path, entry.value, requestedPaths)
+            }
+
+            entry.value.release()
+        }
+
+        for (path in textureManager.getFinished()) {
+            val entry = loading.remove(path) ?: continue
+            loaded[path] = entry
+            if (path in requestedPaths) {
+                processed[path] = entry.texture
+            }
+        }
+
+        if (windows.isEmpty()) {
+            // Pages may only be deleted once any in-progress uploads into them have finished
+            textureManager.cleanup { atlas.cleanup() }
+            this.textureManager = null
+            this.atlas = null
+            loaded.clear()
+            loading.clear()
+        }
+
+        return processed
+    }
+
+    protected fun finalize() {
+        val atlas = atlas ?: return
+        Essential.logger.warn("Atlas in provider cleaned up during finalize instead of prior. Did you forget to call `provide(emptyList())`?")
+        textureManager?.cleanup { atlas.cleanup() }
+        textureManager = null
+        this.atlas = null
+    }
+
+    private fun AsyncTextureManager.createResource(
+        atlas: ThumbnailAtlas,
+        path: ScreenshotId,
+        image: PixelBuffer,
+        requestedPaths: Set<ScreenshotId>,
+    ) {
+        val width = image.getWidth()
+        val height = image.getHeight()
+        val error = image is ErrorImage || width > slotWidth || height > slotHeight
+        if (error && image !is ErrorImage) {
+            Essential.logger.warn("Image for $path is larger (${width}x$height) than atlas slots (${slotWidth}x$slotHeight)")
+        }
+        val slot = if (error) null else atlas.allocate { reclaimSlot(requestedPaths) } ?: return
+        val texture = if (slot != null) {
+            RegisteredTexture(slot.page.identifier, width, height, false, slot.region(width, height))
+        } else {
+            RegisteredTexture(ERROR_IDENTIFIER, width, height, true)
+        }
+        loading[path] = Entry(texture, slot)
+
+        image.retain()
+        uploadInto(path, texture.identifier) {
+            slot?.upload(image)
+            image.release()
+        }
+    }
+
+    /**
+     * Frees the slot of the least recently requested screenshot which is not currently requested.
+     */
+    private fun reclaimSlot(requestedPaths: Set<ScreenshotId>): ThumbnailAtlas.Slot? {
+        val iterator = loaded.entries.iterator()
+        while (iterator.hasNext()) {
+            val (path, entry) = iterator.next()
+            if (path in requestedPaths) continue
+            iterator.remove()
+            return entry.slot ?: continue
+        }
+        return null
+    }
+
+    private class Entry(val texture: RegisteredTexture, val slot: ThumbnailAtlas.Slot?)
+
+    companion object {
+        // Error images are never drawn (see `RegisteredTexture.error`), so they do not need a real texture
+        private val ERROR_IDENTIFIER = UIdentifier("essential", "screenshots/atlas/error")
+    }
+}
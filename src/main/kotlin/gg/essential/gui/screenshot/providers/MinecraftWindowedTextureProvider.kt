@@ -16,6 +16,7 @@ import gg.essential.gui.screenshot.ScreenshotId
 import gg.essential.gui.screenshot.downsampling.ErrorImage
 import gg.essential.gui.screenshot.downsampling.PixelBuffer
 import gg.essential.gui.screenshot.image.PixelBufferTexture
+import gg.essential.gui.screenshot.image.ThumbnailAtlas
 import gg.essential.universal.UMinecraft
 import gg.essential.util.RefCounted
 import gg.essential.util.UIdentifier
@@ -362,6 +363,11 @@ class AsyncTextureManager {
      */
     private val complete = mutableMapOf<ScreenshotId, UIdentifier>()
 
+    /**
+     * Textures which [uploadInto] uploaded into but which are owned by someone else, so [cleanup] must not delete them.
+     */
+    private val sharedTextures = mutableSetOf<UIdentifier>()
+
     /**
      * Schedules the [texture] function to be called on a worker thread.
      * The texture object is then loaded by the Minecraft texture manager on the main thread
@@ -384,6 +390,25 @@ class AsyncTextureManager {
         }
     }
 
+    /**
+     * Schedules the [upload] function to be called on a worker thread, to upload into an existing texture which is
+     * already registered with the Minecraft texture manager, e.g. a [ThumbnailAtlas] page.
+     */
+    fun uploadInto(path: ScreenshotId, resourceLocation: UIdentifier, upload: () -> Unit) {
+        sharedTextures.add(resourceLocation)
+        uploadBackend.submit {
+            upload()
+
+            GL11.glFlush()
+
+            UMinecraft.getMinecraft().executor.execute {
+                synchronized(complete) {
+                    complete[path] = resourceLocation
+                }
+            }
+        }
+    }
+
     /**
      * Returns the list of paths that had their textures uploaded since the last call to getFinished()
      */
@@ -396,8 +421,10 @@ class AsyncTextureManager {
 
     /**
      * Called to clean the context free the underlying resources
+     *
+     * [then] is called on the main thread once all in-progress uploads have finished.
      */
-    fun cleanup() {
+    fun cleanup(then: () -> Unit = {}) {
         uploadBackend.submit {
             // In-progress uploads switch from the executor to the MC thread, so we need to follow them if we want
             // to make sure they're all done running.
@@ -405,10 +432,13 @@ class AsyncTextureManager {
                 // and then we can clean up any unclaimed results
                 synchronized(complete) {
                     complete.forEach { (_, resourceLocation) ->
-                        Minecraft.getMinecraft().textureManager.deleteTexture(resourceLocation.toMC())
+                        if (resourceLocation !in sharedTextures) {
+                            Minecraft.getMinecraft().textureManager.deleteTexture(resourceLocation.toMC())
+                        }
                     }
                     complete.clear()
                 }
+                then()
             }
         }
         uploadBackendRefCounted.release { it.cleanup() }
@@ -27,6 +27,7 @@ import gg.essential.gui.common.ContextOptionMenu
 import gg.essential.gui.common.EssentialCollapsibleSearchbar
 import gg.essential.gui.common.EssentialDropDown
 import gg.essential.gui.common.OutlineButtonStyle
+import gg.essential.gui.common.PreviewThumbnails
 import gg.essential.gui.common.modal.ConfirmDenyModal
 import gg.essential.gui.common.modal.configure
 import gg.essential.gui.common.onSetValueAndNow
@@ -368,6 +369,9 @@ class Wardrobe(
 
         Essential.getInstance().connectionManager.noticesManager.flushDismissNotices()
 
+        // Stills are only worth their video memory while the wardrobe is open
+        PreviewThumbnails.clear()
+
         super.onScreenClose()
     }
 
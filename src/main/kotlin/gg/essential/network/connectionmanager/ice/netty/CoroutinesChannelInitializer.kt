@@ -25,32 +25,100 @@ import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.ReceiveChannel
 import kotlinx.coroutines.channels.SendChannel
 import kotlinx.coroutines.launch
-import java.util.*
+import org.slf4j.LoggerFactory
+import java.nio.ByteBuffer
+import java.util.concurrent.atomic.AtomicLong
 
 class CoroutinesChannelInitializer(
     private val coroutineScope: CoroutineScope,
-    private val inboundChannel: ReceiveChannel<ByteArray>,
+    private val inboundChannel: ReceiveChannel<ByteBuffer>,
     private val outboundChannel: SendChannel<ByteArray>,
     private val onClose: () -> Unit,
 ) : ChannelInitializer<LocalChannel>() {
     override fun initChannel(channel: LocalChannel) {
         val reader = coroutineScope.launch(start = CoroutineStart.LAZY) {
             try {
-                for (bytes in inboundChannel) {
-                    channel.writeAndFlush(Unpooled.wrappedBuffer(bytes))
+                for (buffer in inboundChannel) {
+                    channel.write(Unpooled.wrappedBuffer(buffer))
+                    // Write whatever else has already arrived as well, so we only need to flush once per burst
+                    while (true) {
+                        val next = inboundChannel.tryReceive().getOrNull() ?: break
+                        channel.write(Unpooled.wrappedBuffer(next))
+                    }
+                    channel.flush()
                 }
             } finally {
                 channel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE)
             }
         }
 
-        // The transport channels implement backpressure, however MC doesn't really, so we need an infinite
-        // buffer inbetween so we don't end up blocking the netty thread.
-        val bufferedOutboundChannel = Channel<ByteArray>(Channel.UNLIMITED)
+        // The transport channels implement backpressure, however MC doesn't really, so we must never block the netty
+        // thread. Instead we hand chunks to the transport through a bounded queue, and whenever that is full or more
+        // than HIGH_WATER_MARK bytes are waiting in it, we stop reading from MC's end of the channel (via `autoRead`)
+        // until the transport has caught up.
+        // Note that this does not push back on MC itself: MC's side of the LocalChannel moves every write straight
+        // into our side's inbound queue, which netty does not bound, so that is where MC's data waits while we are
+        // paused. We can only make sure not to buffer any more than that ourselves.
+        val bufferedOutboundChannel = Channel<ByteArray>(OUTBOUND_QUEUE_CHUNKS)
+        val queuedBytes = AtomicLong()
+        val stats = Statistics()
+
+        // Only accessed from the event loop
+        val pending = mutableListOf<ByteBuf>()
+        var pendingBytes = 0
+        // Chunks which did not fit into the queue when it was full, to be enqueued first once there is space again.
+        // Reads are paused as soon as this is non-empty, so it only ever holds what arrived within a single read loop.
+        val overflow = ArrayDeque<ByteArray>()
+
+        fun enqueue(bytes: ByteArray) {
+            queuedBytes.addAndGet(bytes.size.toLong())
+            if (overflow.isNotEmpty() || !bufferedOutboundChannel.trySend(bytes).isSuccess) {
+                overflow.addLast(bytes)
+            }
+        }
+
+        // MC writes (and flushes) each of its packets individually, but usually sends many small ones at once, so
+        // we collect everything we get in one read loop and pass it on to the transport as a single chunk.
+        fun flushPending() {
+            if (pending.isEmpty()) return
+
+            val bytes = ByteArray(pendingBytes)
+            var offset = 0
+            for (buf in pending) {
+                val length = buf.readableBytes()
+                buf.readBytes(bytes, offset, length)
+                buf.release()
+                offset += length
+            }
+            pending.clear()
+            pendingBytes = 0
+
+            stats.chunks++
+            stats.bytes += bytes.size
+            enqueue(bytes)
+        }
+
+        fun resumeIfPossible() {
+            while (overflow.isNotEmpty()) {
+                if (!bufferedOutboundChannel.trySend(overflow.first()).isSuccess) return
+                overflow.removeFirst()
+            }
+            if (queuedBytes.get() < LOW_WATER_MARK && !channel.config().isAutoRead) {
+                channel.config().isAutoRead = true
+            }
+        }
+
         coroutineScope.launch(Dispatchers.Unconfined) {
             try {
                 for (bytes in bufferedOutboundChannel) {
                     outboundChannel.send(bytes)
+                    queuedBytes.addAndGet(-bytes.size.toLong())
+                    if (!channel.config().isAutoRead) {
+                        // Must be done on the event loop, so it cannot race with it pausing reads.
+                        // If we miss the pause because it happens right after this check, the event loop will instead
+                        // see our progress when it tries to resume right after pausing.
+                        channel.eventLoop().execute { resumeIfPossible() }
+                    }
                 }
             } catch (e: Exception) {
                 outboundChannel.close(e)
@@ -70,22 +138,80 @@ class CoroutinesChannelInitializer(
 
             override fun channelRead(ctx: ChannelHandlerContext, msg: Any) {
                 if (msg is ByteBuf) {
-                    val byteArray = ByteArray(msg.readableBytes())
-                    msg.readBytes(byteArray)
-                    msg.release()
-                    bufferedOutboundChannel.trySend(byteArray)
+                    pending.add(msg)
+                    pendingBytes += msg.readableBytes()
+                    stats.messages++
+                    if (pendingBytes >= MAX_CHUNK_SIZE) {
+                        flushPending()
+                    }
                     return
                 }
                 super.channelRead(ctx, msg)
             }
 
+            @Throws(Exception::class)
+            override fun channelReadComplete(ctx: ChannelHandlerContext) {
+                flushPending()
+
+                val queued = queuedBytes.get()
+                stats.maxQueuedBytes = maxOf(stats.maxQueuedBytes, queued)
+                if ((queued >= HIGH_WATER_MARK || overflow.isNotEmpty()) && ctx.channel().config().isAutoRead) {
+                    ctx.channel().config().isAutoRead = false
+                    stats.pauses++
+                    // The transport may have drained the queue before it could see that we paused, in which case it
+                    // will not schedule a resume, so we need to check for ourselves
+                    resumeIfPossible()
+                }
+
+                super.channelReadComplete(ctx)
+            }
+
             @Throws(Exception::class)
             override fun channelInactive(ctx: ChannelHandlerContext) {
                 super.channelInactive(ctx)
 
-                bufferedOutboundChannel.close()
+                flushPending()
+                if (overflow.isEmpty()) {
+                    bufferedOutboundChannel.close()
+                } else {
+                    // Still need to deliver the data which did not fit, but must not block the event loop for it
+                    val remaining = overflow.toList()
+                    overflow.clear()
+                    coroutineScope.launch(Dispatchers.Unconfined) {
+                        try {
+                            for (bytes in remaining) {
+                                bufferedOutboundChannel.send(bytes)
+                            }
+                        } finally {
+                            bufferedOutboundChannel.close()
+                        }
+                    }
+                }
+                LOGGER.debug("Channel closed after sending {}", stats)
                 onClose()
             }
         })
     }
-}
\ No newline at end of file
+
+    /** Outbound statistics for a single channel. Only accessed from its event loop. */
+    private class Statistics {
+        var messages = 0L
+        var chunks = 0L
+        var bytes = 0L
+        var maxQueuedBytes = 0L
+        /** How often we had to stop reading from MC because the transport could not keep up. */
+        var pauses = 0L
+
+        override fun toString(): String =
+            "$bytes bytes in $messages messages / $chunks chunks, max $maxQueuedBytes bytes queued, paused $pauses times"
+    }
+
+    companion object {
+        private val LOGGER = LoggerFactory.getLogger(CoroutinesChannelInitializer::class.java)
+
+        private const val MAX_CHUNK_SIZE = 64 * 1024
+        private const val OUTBOUND_QUEUE_CHUNKS = 64
+        private const val HIGH_WATER_MARK = 4 * 1024 * 1024
+        private const val LOW_WATER_MARK = 1024 * 1024
+    }
+}
@@ -84,7 +84,7 @@ class CapeCosmeticsManager(
     }
 
     fun unlockMissingCapesAsync() {
-        Multithreading.scheduledPool.execute {
+        Multithreading.runAsync {
             mojangLock.acquire()
             try {
                 this.unlockMissingCapes()
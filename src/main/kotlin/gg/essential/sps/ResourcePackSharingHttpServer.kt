@@ -17,35 +17,51 @@ import gg.essential.Essential
 import gg.essential.mixins.ext.client.resource.ResourcePackWithPath
 import gg.essential.sps.quic.jvm.LOCALHOST
 import gg.essential.universal.UMinecraft
-import gg.essential.util.Multithreading
+import gg.essential.util.EssentialExecutors
 import gg.essential.util.ResourceManagerUtil
 import gg.essential.util.executor
 import net.minecraft.client.Minecraft
 import net.minecraft.client.resources.IResourcePack
+import org.apache.commons.codec.binary.Hex
 import org.apache.commons.codec.digest.DigestUtils
 import org.apache.http.HttpStatus
 import java.net.InetSocketAddress
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
 import java.nio.file.Files
 import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.security.DigestOutputStream
+import java.util.stream.Collectors
 import java.util.zip.ZipEntry
 import java.util.zip.ZipOutputStream
 import kotlin.io.path.deleteIfExists
 import kotlin.io.path.exists
 import kotlin.io.path.fileSize
+import kotlin.io.path.getLastModifiedTime
 import kotlin.io.path.inputStream
 import kotlin.io.path.isDirectory
+import kotlin.io.path.isRegularFile
 import kotlin.io.path.listDirectoryEntries
 import kotlin.io.path.outputStream
-import kotlin.io.path.readBytes
 import kotlin.io.path.relativeTo
+import kotlin.math.min
 
 object ResourcePackSharingHttpServer {
     private val spsManager = Essential.getInstance().connectionManager.spsManager
 
     private var server: HttpServer? = null
 
+    @Volatile
     private var packInfo: PackInfo? = null
 
+    /**
+     * The state of the files [packInfo] was computed from.
+     * Resource reloads happen a lot (e.g. every time the pack list is changed, F3+T, etc.), so if none of the files
+     * changed since the last time, we can skip re-zipping and re-hashing what may be hundreds of megabytes.
+     */
+    private var packSource: PackSource? = null
+
     val port: Int?
         get() = server?.address?.port
 
@@ -85,7 +101,7 @@ object ResourcePackSharingHttpServer {
             }
 
         }
-        server.executor = Multithreading.pool
+        server.executor = EssentialExecutors.transfer
         server.start()
         this.server = server
     }
@@ -96,11 +112,67 @@ object ResourcePackSharingHttpServer {
     }
 
     private fun sendFile(file: Path, exchange: HttpExchange) {
-        exchange.sendResponseHeaders(HttpStatus.SC_OK, file.fileSize())
-        file.inputStream().use {
-            it.copyTo(exchange.responseBody)
+        FileChannel.open(file).use { channel ->
+            val size = channel.size()
+            val range = exchange.requestHeaders.getFirst("Range")?.let { parseRange(it, size) } ?: 0L until size
+
+            exchange.responseHeaders.add("Accept-Ranges", "bytes")
+            if (range.isEmpty() && size > 0) {
+                exchange.responseHeaders.add("Content-Range", "bytes */$size")
+                exchange.sendResponseHeaders(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, -1)
+                exchange.responseBody.close()
+                return
+            }
+            val length = if (range.isEmpty()) 0 else range.last - range.first + 1
+            if (length == size) {
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, if (length == 0L) -1 else length)
+            } else {
+                exchange.responseHeaders.add("Content-Range", "bytes ${range.first}-${range.last}/$size")
+                exchange.sendResponseHeaders(HttpStatus.SC_PARTIAL_CONTENT, length)
+            }
+
+            exchange.responseBody.use { out ->
+                // Lets the JDK pick the most efficient way of getting the file into the response (which, depending on
+                // platform and the kind of stream, may avoid copying it through the Java heap)
+                val target = Channels.newChannel(out)
+                var position = range.first
+                val end = range.first + length
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, target)
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a single-range HTTP `Range` header (RFC 9110, Section 14.1.2).
+     * Returns `null` if the header is malformed or uses features we do not support (in which case the whole file
+     * should be sent), or an empty range if the requested range lies entirely outside the file.
+     */
+    private fun parseRange(header: String, size: Long): LongRange? {
+        if (!header.startsWith("bytes=") || ',' in header) {
+            return null
+        }
+        val parts = header.removePrefix("bytes=").trim().split('-', limit = 2)
+        if (parts.size != 2) {
+            return null
+        }
+        val (startStr, endStr) = parts
+        if (startStr.isEmpty()) {
+            // Suffix range, i.e. the last N bytes
+            val suffixLength = endStr.toLongOrNull() ?: return null
+            if (suffixLength <= 0 || size == 0L) {
+                return LongRange.EMPTY
+            }
+            return (size - min(suffixLength, size)) until size
+        }
+        val start = startStr.toLongOrNull() ?: return null
+        val end = if (endStr.isEmpty()) size - 1 else (endStr.toLongOrNull() ?: return null).coerceAtMost(size - 1)
+        return when {
+            start >= size -> LongRange.EMPTY
+            end < start -> null
+            else -> start..end
         }
-        exchange.responseBody.close()
     }
 
     private fun getPrimaryResourcePack(): IResourcePack? {
@@ -130,6 +202,7 @@ object ResourcePackSharingHttpServer {
         if (spsManager.localSession == null || !spsManager.isShareResourcePack) {
             packInfo?.takeIf { it.isTemp }?.file?.deleteIfExists()
             packInfo = null
+            packSource = null
             spsManager.updateResourcePack(null)
             return
         }
@@ -138,55 +211,82 @@ object ResourcePackSharingHttpServer {
     }
 
     private fun recomputePrimaryPack() {
+        val previousPackInfo = packInfo
+        packInfo = computePrimaryPack()
+
         // Cleanup previous temp zip file if needed
-        val packInfo = packInfo
-        if (packInfo?.isTemp == true) {
-            packInfo.file.deleteIfExists()
+        if (previousPackInfo?.isTemp == true && previousPackInfo != packInfo) {
+            previousPackInfo.file.deleteIfExists()
         }
+    }
 
-        val resourcePack = getPrimaryResourcePack()
-        if (resourcePack == null) {
-            this.packInfo = null
-            return
+    private fun computePrimaryPack(): PackInfo? {
+        val resourcePack = getPrimaryResourcePack() ?: return null
+
+        if (resourcePack !is ResourcePackWithPath) {
+            Essential.logger.error("Unable to determine primary resource pack: ${resourcePack.packName} ${resourcePack.javaClass.name}")
+            return null
         }
 
-        if (resourcePack is ResourcePackWithPath) {
-            val file = resourcePack.`essential$path`
-            if (file == null) {
-                this.packInfo = null
-                return
-            }
-            if (file.isDirectory()) {
-                // Zip the resource pack to send
-                val tempFile = Files.createTempFile("resource-pack", ".zip")
-                Essential.logger.info("Zipping host resource pack to $tempFile")
-
-                zipFolder(file, tempFile)
-                this.packInfo = PackInfo(tempFile, getChecksum(tempFile), true)
-            } else if (file.exists()) {
-                this.packInfo = PackInfo(file, getChecksum(file), false)
-            } else {
-                this.packInfo = null
-                Essential.logger.error("Unable to determine primary resource pack: ${resourcePack.packName} ${resourcePack.javaClass.name} $file")
-            }
+        val file = resourcePack.`essential$path` ?: return null
+        if (!file.exists()) {
+            Essential.logger.error("Unable to determine primary resource pack: ${resourcePack.packName} ${resourcePack.javaClass.name} $file")
+            return null
+        }
 
+        val source = PackSource(file, fingerprint(file))
+        val packInfo = packInfo
+        if (packInfo != null && source == packSource && packInfo.file.exists()) {
+            return packInfo
+        }
+
+        val newPackInfo = if (file.isDirectory()) {
+            // Zip the resource pack to send
+            val tempFile = Files.createTempFile("resource-pack", ".zip")
+            Essential.logger.info("Zipping host resource pack to $tempFile")
+
+            PackInfo(tempFile, zipFolder(file, tempFile), true)
         } else {
-            this.packInfo = null
-            Essential.logger.error("Unable to determine primary resource pack: ${resourcePack.packName} ${resourcePack.javaClass.name}")
+            PackInfo(file, getChecksum(file), false)
         }
+        packSource = source
+        return newPackInfo
     }
 
     private fun getChecksum(file: Path): String {
-        return DigestUtils.sha1Hex(file.readBytes())
+        return file.inputStream().use { DigestUtils.sha1Hex(it) }
+    }
+
+    /** Size and modification time of every file in the given pack file or folder, sorted by path. */
+    private fun fingerprint(path: Path): List<FileStamp> {
+        if (!path.isDirectory()) {
+            return listOf(FileStamp("", path.fileSize(), path.getLastModifiedTime()))
+        }
+        return Files.walk(path).use { stream ->
+            stream.filter { it.isRegularFile() }
+                .map { FileStamp(it.relativeTo(path).toString(), it.fileSize(), it.getLastModifiedTime()) }
+                .sorted(compareBy { it.path })
+                .collect(Collectors.toList())
+        }
     }
 
     data class PackInfo(val file: Path, val checksum: String, val isTemp: Boolean)
 
-    /** Adapted from https://stackoverflow.com/questions/51833423/how-to-zip-the-content-of-a-directory-in-java */
+    private data class PackSource(val path: Path, val files: List<FileStamp>)
+
+    private data class FileStamp(val path: String, val size: Long, val lastModified: FileTime)
+
+    /**
+     * Adapted from https://stackoverflow.com/questions/51833423/how-to-zip-the-content-of-a-directory-in-java
+     *
+     * Returns the SHA-1 checksum of the resulting zip file, computed while writing it, so we don't have to read it all
+     * back in again afterwards.
+     */
     @Throws(java.lang.Exception::class)
-    private fun zipFolder(srcFolder: Path, destZipFile: Path) {
-        destZipFile.outputStream().use { fileWriter ->
-            ZipOutputStream(fileWriter).use { zip ->
+    private fun zipFolder(srcFolder: Path, destZipFile: Path): String {
+        val digest = DigestUtils.getSha1Digest()
+        destZipFile.outputStream().buffered().use { fileWriter ->
+            ZipOutputStream(DigestOutputStream(fileWriter, digest)).use { zip ->
                 addFolderToZip(
                     srcFolder,
                     srcFolder,
@@ -194,6 +294,7 @@ object ResourcePackSharingHttpServer {
                 )
             }
         }
+        return Hex.encodeHexString(digest.digest())
     }
 
     @Throws(java.lang.Exception::class)
@@ -201,14 +302,10 @@ object ResourcePackSharingHttpServer {
         if (srcFile.isDirectory()) {
             addFolderToZip(rootPath, srcFile, zip)
         } else {
-            val buf = ByteArray(1024)
-            var len: Int
             srcFile.inputStream().use { `in` ->
                 val name = srcFile.relativeTo(rootPath).toString()
                 zip.putNextEntry(ZipEntry(name))
-                while (`in`.read(buf).also { len = it } > 0) {
-                    zip.write(buf, 0, len)
-                }
+                `in`.copyTo(zip)
             }
         }
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.util
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Records how much time, and where the JVM supports measuring it, how much memory each [EventBus] subscriber takes.
+ *
+ * Measuring adds overhead to every single event, so this is disabled by default and must be enabled at launch with
+ * `-Dessential.eventbus.profile=true`. The results can then be viewed in-game via `/essentialeventbus`, or read via
+ * [snapshot] (e.g. from a benchmark).
+ */
+class EventBusProfiler {
+    private val subscribers = ConcurrentHashMap<String, SubscriberStats>()
+
+    /**
+     * Returns the stats for the subscriber with the given name.
+     * Subscribers of the same name (e.g. multiple instances of the same screen) share their stats.
+     */
+    fun subscriber(name: String): SubscriberStats = subscribers.computeIfAbsent(name, ::SubscriberStats)
+
+    /** Returns the stats of all subscribers, sorted by total time spent, highest first. */
+    fun snapshot(): List<Snapshot> = subscribers.values.map { it.snapshot() }.sortedByDescending { it.totalNanos }
+
+    fun reset() {
+        subscribers.values.forEach { it.reset() }
+    }
+
+    /**
+     * Runs [block], recording its duration and allocations against [stats].
+     */
+    inline fun measure(stats: SubscriberStats, block: () -> Unit) {
+        val startTime = System.nanoTime()
+        val startAllocated = allocatedBytes()
+        try {
+            block()
+        } finally {
+            stats.record(System.nanoTime() - startTime, allocatedBytes() - startAllocated)
+        }
+    }
+
+    class SubscriberStats internal constructor(val name: String) {
+        private val calls = AtomicLong()
+        private val totalNanos = AtomicLong()
+        private val maxNanos = AtomicLong()
+        private val allocatedBytes = AtomicLong()
+
+        fun record(nanos: Long, allocated: Long) {
+            calls.incrementAndGet()
+            totalNanos.addAndGet(nanos)
+            maxNanos.accumulateAndGet(nanos, ::maxOf)
+            allocatedBytes.addAndGet(allocated)
+        }
+
+        internal fun snapshot() = Snapshot(name, calls.get(), totalNanos.get(), maxNanos.get(), allocatedBytes.get())
+
+        internal fun reset() {
+            calls.set(0)
+            totalNanos.set(0)
+            maxNanos.set(0)
+            allocatedBytes.set(0)
+        }
+    }
+
+    data class Snapshot(
+        val name: String,
+        val calls: Long,
+        val totalNanos: Long,
+        val maxNanos: Long,
+        /** Total bytes allocated, always 0 if the JVM does not support measuring allocations. */
+        val allocatedBytes: Long,
+    ) {
+        val averageNanos: Long
+            get() = if (calls == 0L) 0 else totalNanos / calls
+    }
+
+    companion object {
+        private val threadMXBean = (ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean)
+            ?.takeIf { it.isThreadAllocatedMemorySupported && it.isThreadAllocatedMemoryEnabled }
+
+        @JvmStatic
+        fun fromSystemProperties(): EventBusProfiler? =
+            if (System.getProperty("essential.eventbus.profile").toBoolean()) EventBusProfiler() else null
+
+        /** Total bytes allocated by the current thread so far, or 0 if the JVM does not support measuring this. */
+        fun allocatedBytes(): Long = threadMXBean?.getThreadAllocatedBytes(Thread.currentThread().id) ?: 0
+    }
+}
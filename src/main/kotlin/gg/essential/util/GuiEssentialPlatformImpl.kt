@@ -48,6 +48,8 @@ import gg.essential.gui.overlay.ModalManagerImpl
 import gg.essential.gui.overlay.OverlayManager
 import gg.essential.gui.overlay.OverlayManagerImpl
 import gg.essential.gui.screenshot.bytebuf.LimitedAllocator
+import gg.essential.gui.screenshot.image.ThumbnailAtlas
+import gg.essential.gui.screenshot.providers.AtlasWindowedTextureProvider
 import gg.essential.gui.screenshot.providers.MinecraftWindowedTextureProvider
 import gg.essential.gui.screenshot.providers.WindowedImageProvider
 import gg.essential.gui.screenshot.providers.WindowedTextureProvider
@@ -371,6 +373,14 @@ class GuiEssentialPlatformImpl : GuiEssentialPlatform {
     override fun newWindowedTextureProvider(inner: WindowedImageProvider): WindowedTextureProvider =
         MinecraftWindowedTextureProvider(inner)
 
+    override fun newAtlasTextureProvider(inner: WindowedImageProvider, slotWidth: Int, slotHeight: Int): WindowedTextureProvider =
+        if (ThumbnailAtlas.fits(slotWidth, slotHeight)) {
+            AtlasWindowedTextureProvider(inner, slotWidth, slotHeight)
+        } else {
+            // Too large for an atlas page, fall back to one texture per image
+            MinecraftWindowedTextureProvider(inner)
+        }
+
     override fun newUIPlayer(
         camera: State<PerspectiveCamera?>,
         profile: State<Pair<Skin, /*cape*/ String?>?>,
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.util
+
+import gg.essential.Essential
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A set of startup tasks and the dependencies between them.
+ *
+ * Tasks declared via [mainThread] are run on the thread which calls [run], in the order in which they were declared,
+ * because most of them interact with Minecraft or the event bus where order matters (e.g. listener registration).
+ * Tasks declared via [background] are submitted to the given [executor] as soon as all their dependencies have
+ * completed, so they can overlap with each other and with the main thread tasks.
+ * Whenever a main thread task needs to wait for a background task, that wait is recorded in the [trace] so it is easy
+ * to see which background work ended up on the critical path.
+ *
+ * If a background task fails, the failure is logged and all tasks depending on it (directly or indirectly) are skipped.
+ * Only if one of those is a main thread task is the failure propagated to the caller of [run].
+ *
+ * Graphs are single-use, tasks must be declared before [run] is called.
+ */
+class StartupGraph(
+    private val name: String,
+    private val executor: Executor,
+    private val trace: StartupTrace,
+) {
+    private val tasks = mutableListOf<Task>()
+    private val pending = AtomicInteger()
+    private val allDone = CountDownLatch(1)
+    private var started = false
+
+    fun mainThread(name: String, action: Runnable): Task = declare(name, true, action)
+
+    fun background(name: String, action: Runnable): Task = declare(name, false, action)
+
+    private fun declare(name: String, onMainThread: Boolean, action: Runnable): Task {
+        check(!started) { "Cannot declare tasks after the graph has been started." }
+        return Task(name, onMainThread, action).also { tasks.add(it) }
+    }
+
+    /**
+     * Runs all main thread tasks on the current thread and schedules all background tasks once they are ready.
+     *
+     * Returns once all main thread tasks (and therefore all background tasks they depend on) have completed. Background
+     * tasks which no main thread task depends on may still be running at that point, use [awaitAll] to wait for them.
+     * If a main thread task fails (or is skipped because one of its dependencies failed), the failure is re-thrown
+     * from here and all main thread tasks which have not yet run at that point are skipped.
+     */
+    fun run() {
+        check(!started) { "Graph has already been started." }
+        started = true
+        checkAcyclic()
+
+        pending.set(tasks.size)
+        if (tasks.isEmpty()) {
+            allDone.countDown()
+        }
+        for (task in tasks) {
+            task.remaining.set(task.dependencies.size)
+            task.dependencies.forEach { it.dependents.add(task) }
+        }
+
+        val phaseStart = System.nanoTime()
+        try {
+            for (task in tasks) {
+                if (!task.onMainThread && task.dependencies.isEmpty()) {
+                    executor.execute { execute(task) }
+                }
+            }
+
+            val mainTasks = tasks.filter { it.onMainThread }
+            for ((index, task) in mainTasks.withIndex()) {
+                for (dependency in task.dependencies) {
+                    if (dependency.done.count == 0L) continue
+                    val waitStart = System.nanoTime()
+                    dependency.done.await()
+                    trace.record("${task.name} blocked on ${dependency.name}", StartupTrace.Category.Blocked, waitStart, System.nanoTime())
+                }
+                execute(task)
+                val failure = task.failure ?: continue
+                // Skipped tasks still need to be completed, so their dependents get skipped too and [awaitAll] returns
+                for (skipped in mainTasks.subList(index + 1, mainTasks.size)) {
+                    skipped.failure = failure
+                    complete(skipped)
+                }
+                throw RuntimeException("Startup task ${task.name} failed in $name", failure)
+            }
+        } finally {
+            trace.record(name, StartupTrace.Category.Phase, phaseStart, System.nanoTime())
+        }
+    }
+
+    /** Blocks until all tasks of this graph, including background tasks, have completed (or failed). */
+    fun awaitAll() {
+        allDone.await()
+    }
+
+    private fun execute(task: Task) {
+        val failedDependency = task.dependencies.find { it.failure != null }
+        if (failedDependency != null) {
+            task.failure = failedDependency.failure
+            complete(task)
+            return
+        }
+
+        val start = System.nanoTime()
+        try {
+            task.action.run()
+        } catch (e: Throwable) {
+            task.failure = e
+            if (!task.onMainThread) {
+                Essential.logger.error("Startup task ${task.name} failed in $name", e)
+            }
+        } finally {
+            val eventName = if (task.failure != null) "${task.name} (failed)" else task.name
+            trace.record(eventName, if (task.onMainThread) StartupTrace.Category.MainThread else StartupTrace.Category.Background, start, System.nanoTime())
+            complete(task)
+        }
+    }
+
+    private fun complete(task: Task) {
+        task.done.countDown()
+        for (dependent in task.dependents) {
+            if (dependent.remaining.decrementAndGet() == 0 && !dependent.onMainThread) {
+                executor.execute { execute(dependent) }
+            }
+        }
+        if (pending.decrementAndGet() == 0) {
+            allDone.countDown()
+        }
+    }
+
+    /**
+     * Main thread tasks implicitly depend on all main thread tasks declared before them, so a main thread task which
+     * (directly or via background tasks) depends on a later one would dead-lock. This check turns that into an error.
+     */
+    private fun checkAcyclic() {
+        val edges = tasks.associateWith { it.dependencies.toMutableList() }
+        tasks.filter { it.onMainThread }.zipWithNext { previous, next -> edges.getValue(next).add(previous) }
+
+        val visited = mutableSetOf<Task>()
+        val visiting = mutableSetOf<Task>()
+        fun visit(task: Task) {
+            if (task in visited) return
+            check(visiting.add(task)) { "Startup graph $name contains a cycle involving ${task.name}" }
+            edges.getValue(task).forEach(::visit)
+            visiting.remove(task)
+            visited.add(task)
+        }
+        tasks.forEach(::visit)
+    }
+
+    inner class Task internal constructor(
+        val name: String,
+        val onMainThread: Boolean,
+        internal val action: Runnable,
+    ) {
+        internal val dependencies = mutableListOf<Task>()
+        internal val dependents = mutableListOf<Task>()
+        internal val remaining = AtomicInteger()
+        internal val done = CountDownLatch(1)
+
+        /** Set if this task failed, or was skipped because a task it depends on failed. */
+        @Volatile
+        internal var failure: Throwable? = null
+
+        /** Declares that this task may only start once all given [tasks] have completed. Returns this task. */
+        fun dependsOn(vararg tasks: Task): Task {
+            check(!started) { "Cannot declare dependencies after the graph has been started." }
+            for (task in tasks) {
+                require(task in this@StartupGraph.tasks) { "${task.name} is not part of startup graph $name" }
+                dependencies.add(task)
+            }
+            return this
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.util
+
+import gg.essential.lib.gson.JsonArray
+import gg.essential.lib.gson.JsonObject
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * Records what ran when and on which thread during startup (see [StartupGraph]).
+ *
+ * The result can be written in the Chrome trace event format via [writeChromeTrace] and then viewed in e.g.
+ * `chrome://tracing` or https://ui.perfetto.dev, where the main thread row shows exactly which of our tasks, and which
+ * waits for background tasks, were on the critical path to the title screen.
+ */
+class StartupTrace {
+    private val origin = System.nanoTime()
+    private val events = ConcurrentLinkedQueue<Event>()
+
+    fun record(name: String, category: Category, startNanos: Long, endNanos: Long) {
+        val thread = Thread.currentThread()
+        events.add(Event(name, category, thread.id, thread.name, startNanos - origin, endNanos - startNanos))
+    }
+
+    /** Total time the main thread spent waiting for background tasks. */
+    fun blockedNanos(): Long = events.filter { it.category == Category.Blocked }.sumOf { it.durationNanos }
+
+    /** The [count] longest events of the given [category], longest first. */
+    fun longest(category: Category, count: Int): List<Event> =
+        events.filter { it.category == category }.sortedByDescending { it.durationNanos }.take(count)
+
+    fun writeChromeTrace(path: Path) {
+        val traceEvents = JsonArray()
+        val threads = mutableMapOf<Long, String>()
+        for (event in events) {
+            threads[event.threadId] = event.threadName
+            traceEvents.add(JsonObject().apply {
+                addProperty("name", event.name)
+                addProperty("cat", event.category.name)
+                addProperty("ph", "X")
+                addProperty("ts", TimeUnit.NANOSECONDS.toMicros(event.startNanos))
+                addProperty("dur", TimeUnit.NANOSECONDS.toMicros(event.durationNanos))
+                addProperty("pid", 1)
+                addProperty("tid", event.threadId)
+            })
+        }
+        for ((id, name) in threads) {
+            traceEvents.add(JsonObject().apply {
+                addProperty("name", "thread_name")
+                addProperty("ph", "M")
+                addProperty("pid", 1)
+                addProperty("tid", id)
+                add("args", JsonObject().apply { addProperty("name", name) })
+            })
+        }
+        val root = JsonObject().apply {
+            add("traceEvents", traceEvents)
+            addProperty("displayTimeUnit", "ms")
+        }
+
+        Files.createDirectories(path.parent)
+        Files.write(path, root.toString().toByteArray())
+    }
+
+    enum class Category {
+        /** A whole [StartupGraph] run, as seen from the main thread. */
+        Phase,
+        MainThread,
+        Background,
+        /** Time the main thread spent waiting for a background task. */
+        Blocked,
+    }
+
+    class Event(
+        val name: String,
+        val category: Category,
+        val threadId: Long,
+        val threadName: String,
+        /** Relative to the creation of the trace. */
+        val startNanos: Long,
+        val durationNanos: Long,
+    )
+}
@@ -53,7 +53,9 @@ class EventBus @JvmOverloads constructor(
             throw exception
         }
     },
-    private val threadSaftey: Boolean = true) {
+    private val threadSaftey: Boolean = true,
+    /** If set, all subscribers registered from now on will have their cost recorded by this profiler. */
+    val profiler: EventBusProfiler? = null) {
 
     private val subscribers: AbstractMap<Class<*>, MutableList<Subscriber>> =
         if(threadSaftey) ConcurrentHashMap() else HashMap()
@@ -84,7 +86,12 @@ class EventBus @JvmOverloads constructor(
 
             val subscriberMethod = invokerType.setup(obj, obj.javaClass, parameterClazz, method)
 
-            val subscriber = Subscriber(obj, sub.priority, subscriberMethod)
+            val stats = profiler?.subscriber("${obj.javaClass.name}.${method.name}(${parameterClazz.simpleName})")
+            val subscriber = if (stats == null) {
+                Subscriber(obj, sub.priority, subscriberMethod)
+            } else {
+                Subscriber(obj, sub.priority) { event -> profiler!!.measure(stats) { subscriberMethod.invoke(event) } }
+            }
             subscribers.putIfAbsent(parameterClazz, if(threadSaftey) ConcurrentSubscriberArrayList() else SubscriberArrayList())
             subscribers[parameterClazz]!!.add(subscriber)
         }
@@ -93,9 +100,17 @@ class EventBus @JvmOverloads constructor(
     inline fun <reified T> register(noinline listener: (T) -> Unit, priority: Int = 0) = register(T::class.java, listener, priority)
 
     fun <T> register(cls: Class<T>, listener: (T) -> Unit, priority: Int = 0) {
-        val subscriber = Subscriber(listener, priority) {
-            @Suppress("UNCHECKED_CAST")
-            listener(it as T)
+        val stats = profiler?.subscriber("${listener.javaClass.name}(${cls.simpleName})")
+        val subscriber = if (stats == null) {
+            Subscriber(listener, priority) {
+                @Suppress("UNCHECKED_CAST")
+                listener(it as T)
+            }
+        } else {
+            Subscriber(listener, priority) {
+                @Suppress("UNCHECKED_CAST")
+                profiler!!.measure(stats) { listener(it as T) }
+            }
         }
         subscribers.putIfAbsent(cls, if(threadSaftey) ConcurrentSubscriberArrayList() else SubscriberArrayList())
         subscribers[cls]!!.add(subscriber)
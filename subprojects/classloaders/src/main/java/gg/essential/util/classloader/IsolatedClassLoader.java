@@ -14,17 +14,20 @@ package gg.essential.util.classloader;
 
 import com.google.common.collect.Iterators;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * A class loader which strongly prefers loading its own instance of a class rather than using the one from its parent.
@@ -39,20 +42,29 @@ public class IsolatedClassLoader extends URLClassLoader {
 
     // These should only contain things which need to be on the system class loader because the whole point of
     // relaunching is to get our versions of libraries loaded and anything in here, we cannot replace.
-    private final List<String> packageExclusions = new ArrayList<>(Arrays.asList(
+    private final PrefixTrie packageExclusions = new PrefixTrie(
         "java.", // JRE cannot be loaded twice
         "javax.", // JRE cannot be loaded twice
         "sun.", // JRE internals cannot be loaded twice
         "jdk.", // JRE cannot be loaded twice
         "org.apache.logging." // Continue to use the logging set up by any pre-launch code
-    ));
+    );
 
-    private final List<String> classExclusions = new ArrayList<>();
+    private final Set<String> classExclusions = ConcurrentHashMap.newKeySet();
 
     private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
 
     private Predicate<String> resourceFilter;
 
+    /**
+     * Names of all entries in our jars, so lookups for resources (and classes) which are not in any of them (e.g. all
+     * the ones we end up delegating to our parent) can be answered without asking each jar.
+     * Built lazily on first use, {@code null} if not yet built or if our class path contains anything we cannot index
+     * (e.g. directories), in which case we always fall back to the regular lookup.
+     */
+    private volatile Set<String> resourceIndex;
+    private volatile boolean resourceIndexBuilt;
+
     /**
      * The conceptual (but not actual) parent of this class loader.
      * <p>
@@ -92,22 +104,11 @@ public class IsolatedClassLoader extends URLClassLoader {
             return cls;
         }
 
-        // For excluded packages, use the parent class loader
-        for (String exclusion : packageExclusions) {
-            if (name.startsWith(exclusion)) {
-                cls = delegateParent.loadClass(name);
-                classes.put(name, cls);
-                return cls;
-            }
-        }
-
-        // For excluded classes, use the parent class loader
-        for (String exclusion : classExclusions) {
-            if (name.equals(exclusion)) {
-                cls = delegateParent.loadClass(name);
-                classes.put(name, cls);
-                return cls;
-            }
+        // For excluded packages and classes, use the parent class loader
+        if (packageExclusions.matchesPrefixOf(name) || classExclusions.contains(name)) {
+            cls = delegateParent.loadClass(name);
+            classes.put(name, cls);
+            return cls;
         }
 
         // Class is not excluded, so we define it in this loader regardless of whether it's already loaded in
@@ -149,6 +150,87 @@ public class IsolatedClassLoader extends URLClassLoader {
         return super.findClass(name);
     }
 
+    @Override
+    public URL findResource(String name) {
+        Set<String> index = getResourceIndex();
+        if (index != null && !index.contains(name)) {
+            return null;
+        }
+        return super.findResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        Set<String> index = getResourceIndex();
+        if (index != null && !index.contains(name)) {
+            return Collections.emptyEnumeration();
+        }
+        return super.findResources(name);
+    }
+
+    @Override
+    protected void addURL(URL url) {
+        synchronized (this) {
+            super.addURL(url);
+            resourceIndex = null;
+            resourceIndexBuilt = false;
+        }
+    }
+
+    private Set<String> getResourceIndex() {
+        if (resourceIndexBuilt) {
+            return resourceIndex;
+        }
+        synchronized (this) {
+            if (!resourceIndexBuilt) {
+                resourceIndex = buildResourceIndex(getURLs());
+                resourceIndexBuilt = true;
+            }
+            return resourceIndex;
+        }
+    }
+
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    private static Set<String> buildResourceIndex(URL[] urls) {
+        Set<String> names = new HashSet<>();
+        for (URL url : urls) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (Exception e) {
+                return null;
+            }
+            if (!file.isFile()) {
+                return null; // most likely a directory, those we do not index
+            }
+            try (JarFile jar = new JarFile(file)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    names.add(name);
+                    // Jar lookups for directories work with and without the trailing slash
+                    if (name.endsWith("/")) {
+                        names.add(name.substring(0, name.length() - 1));
+                    }
+                    // Multi-release jars may serve versioned entries under their regular name
+                    if (name.startsWith(VERSIONS_PREFIX)) {
+                        int end = name.indexOf('/', VERSIONS_PREFIX.length());
+                        if (end > 0) {
+                            names.add(name.substring(end + 1));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return names;
+    }
+
     @Override
     public URL getResource(String name) {
         // Try our classpath first because the order of our entries may be different from our parent.
@@ -176,6 +258,43 @@ public class IsolatedClassLoader extends URLClassLoader {
         ));
     }
 
+    /**
+     * Matches names against a set of prefixes in time proportional to the length of the name rather than the number of
+     * prefixes.
+     */
+    private static class PrefixTrie {
+        private final Map<Character, PrefixTrie> children = new HashMap<>();
+        private boolean terminal;
+
+        PrefixTrie(String... prefixes) {
+            for (String prefix : prefixes) {
+                add(prefix);
+            }
+        }
+
+        synchronized void add(String prefix) {
+            PrefixTrie node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixTrie());
+            }
+            node.terminal = true;
+        }
+
+        boolean matchesPrefixOf(String name) {
+            PrefixTrie node = this;
+            for (int i = 0; !node.terminal; i++) {
+                if (i == name.length()) {
+                    return false;
+                }
+                node = node.children.get(name.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * We use an empty class loader as the actual parent because using null will use the system class loader and there
      * is plenty of stuff in there.
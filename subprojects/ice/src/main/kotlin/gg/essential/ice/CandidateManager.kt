@@ -31,12 +31,13 @@ import kotlinx.coroutines.flow.launchIn
 import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.launch
 import org.slf4j.Logger
-import java.net.DatagramSocket
 import java.net.Inet4Address
 import java.net.Inet6Address
 import java.net.InetAddress
 import java.net.InetSocketAddress
 import java.net.NetworkInterface
+import java.net.StandardProtocolFamily
+import java.nio.channels.DatagramChannel
 import kotlin.time.Duration.Companion.INFINITE
 
 /**
@@ -182,14 +183,22 @@ class CandidateManager(
             }
 
             for (address in sortedAddresses) {
-                val socket = try {
-                    DatagramSocket(0, address)
+                val channel = try {
+                    val family = if (address is Inet6Address) StandardProtocolFamily.INET6 else StandardProtocolFamily.INET
+                    DatagramChannel.open(family).apply {
+                        try {
+                            bind(InetSocketAddress(address, 0))
+                        } catch (e: Exception) {
+                            close()
+                            throw e
+                        }
+                    }
                 } catch (e: Exception) {
                     logger.warn("Failed to bind to $address, skipping:", e)
                     continue
                 }
-                val socketAddress = InetSocketAddress(address, socket.localPort)
-                val stunSocket = StunSocket(logger, scope, stunManager, socket, socketAddress)
+                val socketAddress = InetSocketAddress(address, (channel.localAddress as InetSocketAddress).port)
+                val stunSocket = StunSocket(logger, scope, stunManager, channel, socketAddress)
                 val preference = if (isVPN) nextVPNPreference-- else nextNormalPreference--
                 emit(ReusableCandidate(CandidateType.Host, stunSocket, null, null, socketAddress, preference))
             }
@@ -35,6 +35,7 @@ import kotlinx.coroutines.delay
 import kotlinx.coroutines.job
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.plus
+import kotlinx.coroutines.withTimeoutOrNull
 import org.slf4j.Logger
 import org.slf4j.spi.LoggingEventBuilder
 import java.io.IOException
@@ -44,6 +45,7 @@ import kotlin.math.max
 import kotlin.math.min
 import kotlin.time.Duration
 import kotlin.time.Duration.Companion.INFINITE
+import kotlin.time.Duration.Companion.milliseconds
 import kotlin.time.Duration.Companion.minutes
 import kotlin.time.Duration.Companion.seconds
 import kotlin.time.TimeSource
@@ -84,6 +86,21 @@ class IceAgent(
 
     val localCandidateChannel = Channel<LocalCandidate>(Channel.UNLIMITED)
     val remoteCandidateChannel = Channel<RemoteCandidate>(Channel.UNLIMITED)
+    private val startTime = TimeSource.Monotonic.markNow()
+
+    /**
+     * Time it took from creation of this agent until a candidate pair was selected, or `null` if none has been selected
+     * yet. Together with [selectedPairIsRelayed] this is the main metric for how well connection setup performs.
+     */
+    @Volatile
+    var timeToSelectedPair: Duration? = null
+        private set
+
+    /** Whether the selected pair (if any) goes through a TURN relay on either side. */
+    @Volatile
+    var selectedPairIsRelayed: Boolean = false
+        private set
+
     /** Completes once we are ready to send data. Should be used `withTimeout` as it may never complete if ICE fails. */
     val readyForData = CompletableDeferred<Unit>(parent = job)
     val inboundDataChannel = Channel<Pair<LocalCandidate, ByteArray>>(1000, BufferOverflow.DROP_OLDEST) { pair ->
@@ -115,6 +132,25 @@ class IceAgent(
     private val validList = mutableListOf<CandidatePair>()
     private var selectedPair: CandidatePair? = null
 
+    /**
+     * The pair we currently send data on once a pair has been selected.
+     * Starts out as the [selectedPair] but may move to one of the [monitoredPairs] if the selected one stops working.
+     */
+    private var activePair: CandidatePair? = null
+
+    /**
+     * The [selectedPair] plus up to [BACKUP_PAIRS] other pairs which we keep alive after selection, so we can
+     * quickly move to one of them (see [activePair]) if the selected one dies, e.g. because of a Wi-Fi handover or
+     * a NAT dropping its mapping, instead of the whole connection failing.
+     * Backup pairs are picked by the controlling agent, the controlled agent adopts whichever pairs it receives probes
+     * on within [BACKUP_ADOPTION_TIMEOUT] of selection (see [adoptBackupPair]), so both sides keep the same candidates.
+     * Empty until a pair has been selected and if the remote is ice4j (which does not cope well with extra checks).
+     */
+    private val monitoredPairs = mutableListOf<CandidatePair>()
+
+    /** Whether the controlled agent still accepts new backup pairs from the controlling agent, see [adoptBackupPair]. */
+    private var adoptingBackupPairs = false
+
     /**
      * Contains the pair on which the controlled client has last received data while [selectedPair] is not yet set.
      * Undefined for controlling client and after [selectedPair] has been set.
@@ -311,7 +347,7 @@ class IceAgent(
     }
 
     private suspend fun performRTTChecks() {
-        val pair = validList.minByOrNull { it.extraRttChecks } ?: return
+        val pair = validList.filter { it.rttCheck?.isActive != true }.minByOrNull { it.extraRttChecks } ?: return
 
         // If we have a valid pair, we must have already received a successful response and should therefore be aware
         // of which software the remote uses.
@@ -320,28 +356,41 @@ class IceAgent(
         }
 
         pair.extraRttChecks++
-        checksScope.launch {
-            val tId = TransactionId.create()
-            val logger = logger.withKeyValue("tId", tId)
-            logger.trace("Starting rtt check: {}", pair)
-
-            val (request, response) = sendIceBindingRequest(tId, pair)
-            if (response == null) {
-                logger.warn("RTT check of previously valid pair failed, no response: {}", pair)
-                return@launch
-            }
+        pair.rttCheck = checksScope.launch {
+            checkRTT(pair)
+        }
+    }
 
-            if (response.message.cls == StunClass.ResponseError) {
-                // We never send error responses, so any we receive are unexpected
-                logger.warn("Failed, got unexpected error response: {}", response.message)
-                return@launch
-            }
+    /**
+     * Sends a single Binding request on a previously valid pair and, if it is answered within [timeout], feeds the
+     * measured round trip time into [CandidatePair.rtt].
+     * Callers must make sure there is at most one such check in flight per pair (see [CandidatePair.rttCheck]), so
+     * a slow response is never mistaken for the answer to a newer request.
+     *
+     * @return whether a successful response was received
+     */
+    private suspend fun checkRTT(pair: CandidatePair, timeout: Duration = INFINITE): Boolean {
+        val tId = TransactionId.create()
+        val logger = logger.withKeyValue("tId", tId)
+        logger.trace("Starting rtt check: {}", pair)
+
+        val (request, response) = withTimeoutOrNull(timeout) { sendIceBindingRequest(tId, pair) } ?: (null to null)
+        if (request == null || response == null) {
+            logger.debug("RTT check of previously valid pair failed, no response: {}", pair)
+            return false
+        }
 
-            // Success!
-            val rtt = request.getRoundTripTime(response)
-            logger.trace("Measured RTT of {} to be {}ms", pair, rtt.inWholeMilliseconds)
-            pair.rtt = min(pair.rtt ?: INFINITE, rtt)
+        if (response.message.cls == StunClass.ResponseError) {
+            // We never send error responses, so any we receive are unexpected
+            logger.warn("Failed, got unexpected error response: {}", response.message)
+            return false
         }
+
+        // Success!
+        val rtt = request.getRoundTripTime(response)
+        logger.trace("Measured RTT of {} to be {}ms", pair, rtt.inWholeMilliseconds)
+        pair.addRttSample(rtt)
+        return true
     }
 
     private suspend fun checkPair(pair: CandidatePair) {
@@ -405,8 +454,10 @@ class IceAgent(
         }
         validList.add(validPair)
 
-        pair.rtt = min(pair.rtt ?: INFINITE, rtt)
-        validPair.rtt = min(validPair.rtt ?: INFINITE, rtt)
+        pair.addRttSample(rtt)
+        if (validPair !== pair) {
+            validPair.addRttSample(rtt)
+        }
 
         pair.state = CandidatePair.State.Succeeded
         validPair.state = CandidatePair.State.Succeeded
@@ -513,33 +564,160 @@ class IceAgent(
 
         selectedPair = pair
 
+        val elapsed = startTime.elapsedNow()
+        timeToSelectedPair = elapsed
+        selectedPairIsRelayed = pair.local.isRelay || pair.remote.isRelay
+        logger.atInfo()
+            .addKeyValue("timeToSelectedPair", elapsed.inWholeMilliseconds)
+            .addKeyValue("relayed", selectedPairIsRelayed)
+            .log("Selected {} pair after {}", if (selectedPairIsRelayed) "relayed" else "direct", elapsed)
+
         if (remoteIsIce4J.await()) {
             readyForData.complete(Unit)
         }
 
-        pair.local.relay?.createChannel(pair.remote.address)
+        activePair = pair
+        monitoredPairs.add(pair)
+        // Only the controlling agent picks backups, the controlled one follows its choice (see [adoptBackupPair])
+        if (controlling && !remoteIsIce4J.await()) {
+            validList
+                .filter { it.local.base != pair.local.base || it.remote.address != pair.remote.address }
+                .distinctBy { it.local.base to it.remote.address }
+                .sortedBy { score(it) }
+                .take(BACKUP_PAIRS)
+                .let { monitoredPairs.addAll(it) }
+        }
+
+        for (monitoredPair in monitoredPairs) {
+            monitoredPair.local.relay?.createChannel(monitoredPair.remote.address)
+        }
 
         // We're not going to change our mind, so we can cancel any remaining checks
         checksScope.cancel()
-        // We only need to keep alive this one pair now, so we can release all other candidates
-        val local = (pair.local as? LocalPeerReflexiveCandidate)?.baseCandidate ?: pair.local
+
+        if (!controlling && !remoteIsIce4J.await()) {
+            // We don't know yet which backup pairs the controlling agent picked, so we need to keep all candidates
+            // around until it had a chance to start probing them.
+            adoptingBackupPairs = true
+            coroutineScope.launch {
+                delay(BACKUP_ADOPTION_TIMEOUT)
+                adoptingBackupPairs = false
+                releaseUnmonitoredCandidates()
+            }
+            return
+        }
+
+        releaseUnmonitoredCandidates()
+
+        if (monitoredPairs.size > 1) {
+            logger.info("Keeping {} backup pairs alive:", monitoredPairs.size - 1)
+            for (backupPair in monitoredPairs.drop(1)) {
+                logger.info("   {} ({}ms RTT)", backupPair, backupPair.rtt?.inWholeMilliseconds)
+            }
+            coroutineScope.launch { monitorPairs() }
+        }
+    }
+
+    /** We only need to keep alive the selected pair and its backups, so we can release all other candidates. */
+    private fun releaseUnmonitoredCandidates() {
+        val keep = monitoredPairs.map { (it.local as? LocalPeerReflexiveCandidate)?.baseCandidate ?: it.local }
         for (other in localCandidates) {
-            if (other != local) {
+            if (other !in keep) {
                 other.close()
             }
         }
     }
 
-    private fun getBestValidPair(): CandidatePair? {
-        return validList.minByOrNull { pair ->
-            // Prefer lowest latency and non-relay
-            var score = pair.rtt?.inWholeMilliseconds ?: 9999
-            if (pair.local.isRelay) score += RELAY_PENALTY
-            if (pair.remote.isRelay) score += RELAY_PENALTY
-            score
+    /**
+     * Called on the controlled agent when it receives a Binding request after a pair has been selected.
+     * The controlling agent only keeps probing the selected pair and the backup pairs it picked, so any other pair we
+     * receive a request on must be one of its backups, and we need to keep our end of it alive too.
+     */
+    private fun adoptBackupPair(packet: ReceivedPacket) {
+        if (!adoptingBackupPairs || monitoredPairs.size > BACKUP_PAIRS) {
+            return
+        }
+        if (monitoredPairs.any { it.local.base == packet.candidate.base && it.remote.address == packet.source }) {
+            return
+        }
+        val pair = validList.find { it.local.base == packet.candidate.base && it.remote.address == packet.source }
+            ?: checklist.find { it.local.base == packet.candidate.base && it.remote.address == packet.source }
+            ?: return
+
+        logger.info("Remote keeps {} as a backup pair, keeping it alive as well ({}ms RTT)", pair, pair.rtt?.inWholeMilliseconds)
+        monitoredPairs.add(pair)
+        pair.local.relay?.createChannel(pair.remote.address)
+
+        if (monitoredPairs.size == 2) {
+            coroutineScope.launch { monitorPairs() }
+        }
+    }
+
+    /**
+     * Periodically probes all [monitoredPairs] and moves the [activePair] to the best healthy one once it has missed
+     * [MAX_LOST_PROBES] probes in a row.
+     * A pair which still has a probe in flight is skipped, so a slow pair gets probed less often rather than piling up
+     * overlapping requests.
+     *
+     * Only the data path changes, the upper layers (QUIC/PseudoTCP) just see a few lost packets. The remote will
+     * usually detect the failure on its own as well; if it is the controlled agent, it will additionally follow
+     * whichever pair it receives data on (see [processPacket]), so both directions end up on the same pair.
+     */
+    private suspend fun monitorPairs() {
+        while (true) {
+            delay(PROBE_INTERVAL)
+
+            for (pair in monitoredPairs) {
+                if (pair.rttCheck?.isActive == true) continue
+                pair.rttCheck = coroutineScope.launch { probePair(pair) }
+            }
+
+            val active = activePair ?: continue
+            if (active.isHealthy) continue
+            val replacement = monitoredPairs.filter { it.isHealthy }.minByOrNull { score(it) }
+            if (replacement == null) {
+                if (active.lostProbes == MAX_LOST_PROBES) {
+                    logger.warn("Active pair {} stopped responding and there is no healthy backup pair.", active)
+                }
+                continue
+            }
+            logger.warn("Active pair {} stopped responding, failing over to {} ({}ms RTT)",
+                active, replacement, replacement.rtt?.inWholeMilliseconds)
+            activePair = replacement
         }
     }
 
+    private suspend fun probePair(pair: CandidatePair) {
+        pair.probesSent++
+        val timeout = ((pair.rtt ?: Duration.ZERO) * 2).coerceAtLeast(MIN_PROBE_TIMEOUT)
+        if (!checkRTT(pair, timeout)) {
+            pair.probesLost++
+            pair.lostProbes++
+            if (pair.lostProbes == MAX_LOST_PROBES) {
+                logger.info("Pair {} is unhealthy, lost {} probes in a row ({}/{} in total)",
+                    pair, pair.lostProbes, pair.probesLost, pair.probesSent)
+            }
+            return
+        }
+
+        if (pair.lostProbes >= MAX_LOST_PROBES) {
+            logger.info("Pair {} is healthy again", pair)
+        }
+        pair.lostProbes = 0
+    }
+
+    private fun getBestValidPair(): CandidatePair? {
+        return validList.minByOrNull { score(it) }
+    }
+
+    private fun score(pair: CandidatePair): Long {
+        // Prefer lowest latency and non-relay
+        var score = pair.rtt?.inWholeMilliseconds ?: 9999
+        if (pair.local.isRelay) score += RELAY_PENALTY
+        if (pair.remote.isRelay) score += RELAY_PENALTY
+        return score
+    }
+
     private fun logValidList(nominatedPair: CandidatePair) {
         for (pair in validList) {
             logger.info(" {} {} ({}ms RTT)", if (pair === nominatedPair) "*" else " ", pair, pair.rtt?.inWholeMilliseconds)
@@ -553,7 +731,7 @@ class IceAgent(
         //       controlling client decided, the data flow may be asymmetric and NATs on the way which then only ever
         //       see data going one way may decide that the other side is no longer interested in the conversation and
         //       therefore drop their port mapping.
-        val pair = selectedPair ?: (if (controlling) null else lastReceivedDataPair) ?: getBestValidPair() ?: return
+        val pair = activePair ?: (if (controlling) null else lastReceivedDataPair) ?: getBestValidPair() ?: return
 
         if (highVolumeLogging) {
             val checksum = sha256.digest(bytes).toBase64String()
@@ -585,8 +763,21 @@ class IceAgent(
                     }
                 }
         }
-        if (!controlling && selectedPair == null) {
-            lastReceivedDataPair = validList.find { it.local.base == packet.candidate.base && it.remote.address == packet.source }
+        if (selectedPair == null) {
+            if (!controlling) {
+                lastReceivedDataPair = validList.find { it.local.base == packet.candidate.base && it.remote.address == packet.source }
+            }
+        } else if (monitoredPairs.isNotEmpty()) {
+            val pair = monitoredPairs.find { it.local.base == packet.candidate.base && it.remote.address == packet.source }
+            if (pair != null) {
+                pair.lostProbes = 0
+                // Same reasoning as for `lastReceivedDataPair`: If the controlling agent has moved to a different
+                // pair, we must follow it to keep the data flow symmetric.
+                if (!controlling && pair != activePair) {
+                    logger.info("Remote moved to pair {}, following it", pair)
+                    activePair = pair
+                }
+            }
         }
         inboundDataChannel.send(Pair(packet.candidate, packet.data))
     }
@@ -612,6 +803,14 @@ class IceAgent(
                 )
                 packet.reply(response.encode())
 
+                if (selectedPair != null) {
+                    // ICE has concluded, only probes of the selected and backup pairs are expected at this point
+                    if (!controlling) {
+                        adoptBackupPair(packet)
+                    }
+                    return
+                }
+
                 // Potentially discover new peer reflexive candidate
                 var remoteCandidate = remoteCandidates.find { it.address == packet.source }
                 if (remoteCandidate == null) {
@@ -670,10 +869,27 @@ class IceAgent(
     private class CandidatePair(val local: LocalCandidate, val remote: RemoteCandidate, isLocalControlling: Boolean) {
         var state: State = State.Waiting
         var check: Job? = null
+        /** The currently running [checkRTT] (or probe) for this pair, if any. */
+        var rttCheck: Job? = null
+        /** Smoothed round trip time, see [addRttSample]. */
         var rtt: Duration? = null
         var extraRttChecks = 0
         var hadTriggeredCheck = false
 
+        /** Consecutive probes which went unanswered, reset whenever we receive anything on this pair. */
+        var lostProbes = 0
+        var probesSent = 0
+        var probesLost = 0
+
+        val isHealthy: Boolean
+            get() = lostProbes < MAX_LOST_PROBES
+
+        /** Updates [rtt] with a new measurement, using the same smoothing as TCP (https://www.rfc-editor.org/rfc/rfc6298). */
+        fun addRttSample(sample: Duration) {
+            val rtt = rtt
+            this.rtt = if (rtt == null) sample else rtt * 7 / 8 + sample / 8
+        }
+
         /**
          * Set on the controlled side when this pair is nominated by the controlling agent but we don't yet know whether
          * it actually works.
@@ -704,6 +920,11 @@ class IceAgent(
 
     companion object {
         private const val MAX_CHECKLIST_SIZE = 100
+        private val BACKUP_PAIRS = Integer.getInteger("essential.sps.backup_pairs", 2)
+        private val PROBE_INTERVAL = 250.milliseconds
+        private val MIN_PROBE_TIMEOUT = 300.milliseconds
+        private val BACKUP_ADOPTION_TIMEOUT = 5.seconds
+        private const val MAX_LOST_PROBES = 3
         private val LOG_DATA_PACKET_CONTENT = System.getProperty("essential.sps.log_data_packet_content").toBoolean()
         private val RELAY_PENALTY = Integer.getInteger("essential.sps.relay_latency_threshold", 100)
         private val sha256 = MessageDigest.getInstance("SHA-256")
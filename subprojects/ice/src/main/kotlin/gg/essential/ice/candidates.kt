@@ -92,7 +92,7 @@ open class LocalCandidateImpl(
 
     override suspend fun send(packet: DatagramPacket): Boolean {
         if (relay != null) {
-            relay.sendChannel.trySend(packet)
+            relay.send(packet)
             return true // relay doesn't give feedback
         } else {
             return socket.send(packet)
@@ -101,7 +101,7 @@ open class LocalCandidateImpl(
 
     override fun sendUnchecked(packet: DatagramPacket) {
         if (relay != null) {
-            relay.sendChannel.trySend(packet)
+            relay.send(packet)
         } else {
             socket.sendUnchecked(packet)
         }
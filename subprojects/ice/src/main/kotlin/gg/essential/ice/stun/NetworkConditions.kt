@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.ice.stun
+
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.random.Random
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
+
+/**
+ * Artificially degraded network conditions applied to all packets sent by a [StunSocket].
+ *
+ * Meant for measuring how connection setup and throughput hold up on bad connections without needing an actually bad
+ * connection, e.g. by running two clients on loopback with
+ * `-Dessential.sps.simulate.latency=50 -Dessential.sps.simulate.jitter=20 -Dessential.sps.simulate.loss=0.02`.
+ * Jitter larger than the gap between packets will naturally result in packets being re-ordered.
+ * Given the same [seed], the same sequence of packets will be affected in the same way. Each socket therefore gets its
+ * own instance (see [forNextSocket]), so the sequence of one socket does not depend on the traffic of any others.
+ */
+class NetworkConditions(
+    val latency: Duration,
+    val jitter: Duration,
+    /** Probability (between 0 and 1) for any given packet to be dropped. */
+    val loss: Double,
+    seed: Long,
+) {
+    private val random = Random(seed)
+
+    /**
+     * Returns the delay with which the next packet should be sent, or `null` if it should be dropped.
+     */
+    @Synchronized
+    fun nextPacket(): Duration? {
+        if (loss > 0 && random.nextDouble() < loss) {
+            return null
+        }
+        if (jitter <= Duration.ZERO) {
+            return latency
+        }
+        val offset = jitter * (random.nextDouble() * 2 - 1)
+        return (latency + offset).coerceAtLeast(Duration.ZERO)
+    }
+
+    companion object {
+        private val latency = System.getProperty("essential.sps.simulate.latency")?.toLongOrNull() ?: 0
+        private val jitter = System.getProperty("essential.sps.simulate.jitter")?.toLongOrNull() ?: 0
+        private val loss = System.getProperty("essential.sps.simulate.loss")?.toDoubleOrNull() ?: 0.0
+        private val seed = System.getProperty("essential.sps.simulate.seed")?.toLongOrNull() ?: 0
+
+        private val sockets = AtomicLong()
+
+        /**
+         * Returns new conditions as configured via system properties, or `null` if no simulation was requested.
+         * Each call is seeded with the configured seed plus the number of previous calls, so the n-th socket of a run
+         * always sees the same sequence.
+         */
+        fun forNextSocket(): NetworkConditions? {
+            if (latency <= 0 && jitter <= 0 && loss <= 0) {
+                return null
+            }
+            val socketSeed = seed + sockets.getAndIncrement()
+            return NetworkConditions(latency.milliseconds, jitter.milliseconds, loss.coerceIn(0.0, 1.0), socketSeed)
+        }
+    }
+}
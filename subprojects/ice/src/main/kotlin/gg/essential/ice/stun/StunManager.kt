@@ -77,6 +77,19 @@ class StunManager(private val scope: CoroutineScope) {
      * by the caller.
      */
     fun messageReceived(parentLogger: Logger, packet: ReceivedPacket): StunMessage? {
+        // Late responses to requests which have already completed (e.g. re-transmits) are fairly common, and there's
+        // no point in fully decoding (and verifying) those.
+        if (StunMessage.peekClass(packet.data).isResponse) {
+            val transactionId = StunMessage.peekTransactionId(packet.data)
+            if (transactionId !in activeRequests) {
+                parentLogger.atTrace()
+                    .addKeyValue("remoteAddress", packet.source)
+                    .addKeyValue("tId", transactionId)
+                    .log("Ignoring STUN response because we have no active request for that id.")
+                return null
+            }
+        }
+
         val message = try {
             StunMessage.decode(
                 packet.data,
@@ -17,6 +17,7 @@ import java.net.Inet4Address
 import java.net.Inet6Address
 import java.net.InetAddress
 import java.net.InetSocketAddress
+import java.nio.ByteBuffer
 import javax.crypto.Mac
 import javax.crypto.spec.SecretKeySpec
 import kotlin.experimental.xor
@@ -42,77 +43,33 @@ data class StunMessage(
     val integrityProtectionKey: ByteArray?
         get() = attribute<StunAttribute.MessageIntegrity>()?.key
 
-    fun encode(): ByteArray {
-        fun encodeXorAddress(address: InetSocketAddress): ByteArray {
-            val family = when (address.address) {
-                is Inet4Address -> 1
-                is Inet6Address -> 2
-                else -> throw IOException("Unknown address family ${address.address}")
-            }
-            val port = address.port
-            val addressBytes = address.address.address
-            val addressMask = MAGIC_COOKIE + transactionId.bytes
-            for (i in addressBytes.indices) {
-                addressBytes[i] = addressBytes[i].xor(addressMask[i])
-            }
-            val bytes = ByteArray(4 + addressBytes.size)
-            bytes[1] = family.toByte()
-            bytes[2] = port.shr(8).toByte().xor(MAGIC_COOKIE[0])
-            bytes[3] = port.toByte().xor(MAGIC_COOKIE[1])
-            addressBytes.copyInto(bytes, 4)
-            return bytes
-        }
-        fun encodeInt(value: Int): ByteArray {
-            return byteArrayOf(
-                value.shr(24).toByte(),
-                value.shr(16).toByte(),
-                value.shr(8).toByte(),
-                value.shr(0).toByte(),
-            )
+    /** The exact number of bytes [encodeInto] will write. */
+    fun encodedSize(): Int {
+        var size = HEADER_SIZE
+        if (type != StunType.Send) {
+            size += 4 + SOFTWARE_BYTES.size.padToMultipleOf(4)
         }
-        fun encodeLong(value: Long): ByteArray {
-            return byteArrayOf(
-                value.shr(56).toByte(),
-                value.shr(48).toByte(),
-                value.shr(40).toByte(),
-                value.shr(32).toByte(),
-                value.shr(24).toByte(),
-                value.shr(16).toByte(),
-                value.shr(8).toByte(),
-                value.shr(0).toByte(),
-            )
+        for (attr in attributes) {
+            size += 4 + encodedValueSize(attr).padToMultipleOf(4)
         }
+        return size
+    }
 
-        val attributes = attributes.toMutableList()
-
-        if (type != StunType.Send) {
-            attributes.add(0, StunAttribute.Software(SOFTWARE))
-        }
+    fun encode(): ByteArray {
+        val bytes = ByteArray(encodedSize())
+        encodeInto(ByteBuffer.wrap(bytes))
+        return bytes
+    }
 
-        val encodedAttrs = attributes.map { attr ->
-            when (attr) {
-                is StunAttribute.MappedAddress -> throw IllegalArgumentException("MappedAddress encoding not implemented.")
-                is StunAttribute.XorMappedAddress -> Pair(StunAttributeType.XorMappedAddress, encodeXorAddress(attr.address))
-                is StunAttribute.Username -> Pair(StunAttributeType.Username, attr.username.encodeToByteArray())
-                is StunAttribute.MessageIntegrity -> Pair(StunAttributeType.MessageIntegrity, ByteArray(20))
-                is StunAttribute.ErrorCode -> throw IllegalArgumentException("ErrorCode encoding not implemented.")
-                is StunAttribute.UnknownAttributes -> throw IllegalArgumentException("UnknownAttributes encoding not implemented.")
-                is StunAttribute.ChannelNumber -> Pair(StunAttributeType.ChannelNumber, encodeInt(attr.number.toInt().shl(16)))
-                is StunAttribute.Lifetime -> Pair(StunAttributeType.Lifetime, encodeInt(attr.seconds.toInt()))
-                is StunAttribute.XorPeerAddress -> Pair(StunAttributeType.XorPeerAddress, encodeXorAddress(attr.address))
-                is StunAttribute.Data -> Pair(StunAttributeType.Data, attr.bytes)
-                is StunAttribute.XorRelayedAddress -> Pair(StunAttributeType.XorRelayedAddress, encodeXorAddress(attr.address))
-                is StunAttribute.RequestedTransport -> Pair(StunAttributeType.RequestedTransport, byteArrayOf(17/*UDP*/, 0, 0, 0))
-                is StunAttribute.Priority -> Pair(StunAttributeType.Priority, encodeInt(attr.value))
-                is StunAttribute.UseCandidate -> Pair(StunAttributeType.UseCandidate, ByteArray(0))
-                is StunAttribute.Software -> Pair(StunAttributeType.Software, attr.value.encodeToByteArray())
-                is StunAttribute.TransactionTransmitCounter -> Pair(
-                    StunAttributeType.TransactionTransmitCounter,
-                    byteArrayOf(0, 0, attr.request.toByte(), attr.response.toByte()))
-                is StunAttribute.IceControlling -> Pair(StunAttributeType.IceControlling, encodeLong(attr.tiebreaker.toLong()))
-                is StunAttribute.IceControlled -> Pair(StunAttributeType.IceControlled, encodeLong(attr.tiebreaker.toLong()))
-            }
-        }
+    /**
+     * Writes this message into [buffer] (which must be in big-endian byte order, the default) starting at its current
+     * position, which is advanced by [encodedSize] bytes.
+     * Apart from what's needed to get at the content of some attributes (e.g. an address's bytes), this does not
+     * allocate.
+     */
+    fun encodeInto(buffer: ByteBuffer) {
+        val start = buffer.position()
+        val attrsLength = encodedSize() - HEADER_SIZE
 
         val typeAndClass = run {
             val t = type.id
@@ -123,54 +80,177 @@ data class StunMessage(
                 .or(c.and(0b10).shl(7))
                 .or(c.and(0b1).shl(4))
         }
-        val attrsLength = encodedAttrs.sumOf { 4 + it.second.size.padToMultipleOf(4) }
-
-        val bytes = ByteArray(HEADER_SIZE + attrsLength)
-        bytes[0] = typeAndClass.shr(8).toByte()
-        bytes[1] = typeAndClass.toByte()
-        // Length written later because MessageIntegrity handling might overwrite it
-        MAGIC_COOKIE.copyInto(bytes, 4)
-        transactionId.bytes.copyInto(bytes, 8)
-
-        var offset = 20
-        for ((type, encodedAttr) in encodedAttrs) {
-            val attrLength = encodedAttr.size
-            bytes[offset] = type.id.shr(8).toByte()
-            bytes[offset + 1] = type.id.toByte()
-            bytes[offset + 2] = attrLength.shr(8).toByte()
-            bytes[offset + 3] = attrLength.toByte()
-            offset += 4
-            encodedAttr.copyInto(bytes, offset)
-            offset += attrLength.padToMultipleOf(4)
-
-            if (type == StunAttributeType.MessageIntegrity) {
-                // The input to the HMAC is the content up to and including the **preceding** attribute
-                val verifiedLength = offset - 24
-                // The stored message length however includes the MessageIntegrity attribute
-                val storedLength = offset
-                bytes[2] = (storedLength - HEADER_SIZE).shr(8).toByte()
-                bytes[3] = (storedLength - HEADER_SIZE).toByte()
-                val key: ByteArray = attributes.firstNotNullOf { it as? StunAttribute.MessageIntegrity }.key
-                    ?: throw IOException("Cannot encode MessageIntegrity without password.")
-                val mac = Mac.getInstance("HmacSHA1")
-                mac.init(SecretKeySpec(key, "HmacSHA1"))
-                mac.update(bytes, 0, verifiedLength)
-                val hmac = mac.doFinal()
-                hmac.copyInto(bytes, offset - 20)
+        buffer.putShort(typeAndClass.toShort())
+        buffer.putShort(attrsLength.toShort())
+        buffer.put(MAGIC_COOKIE)
+        buffer.put(transactionId.bytes)
+
+        if (type != StunType.Send) {
+            buffer.putAttributeHeader(StunAttributeType.Software, SOFTWARE_BYTES.size)
+            buffer.put(SOFTWARE_BYTES)
+            buffer.putPadding(SOFTWARE_BYTES.size)
+        }
+
+        for (attr in attributes) {
+            val valueSize = encodedValueSize(attr)
+            when (attr) {
+                is StunAttribute.MappedAddress -> throw IllegalArgumentException("MappedAddress encoding not implemented.")
+                is StunAttribute.XorMappedAddress -> {
+                    buffer.putAttributeHeader(StunAttributeType.XorMappedAddress, valueSize)
+                    buffer.putXorAddress(attr.address)
+                }
+                is StunAttribute.Username -> {
+                    buffer.putAttributeHeader(StunAttributeType.Username, valueSize)
+                    buffer.putUtf8(attr.username)
+                }
+                is StunAttribute.MessageIntegrity -> {
+                    val key = attr.key ?: throw IOException("Cannot encode MessageIntegrity without password.")
+                    // The input to the HMAC is the content up to and including the **preceding** attribute
+                    val verifiedLength = buffer.position() - start
+                    // The stored message length however includes the MessageIntegrity attribute
+                    val storedLength = verifiedLength + 4 + valueSize
+                    buffer.putShort(start + 2, (storedLength - HEADER_SIZE).toShort())
+
+                    val hmac = HMAC.get()
+                    val mac = hmac.init(key)
+                    val verified = buffer.duplicate()
+                    verified.position(start)
+                    verified.limit(start + verifiedLength)
+                    mac.update(verified)
+                    mac.doFinal(hmac.output, 0)
+
+                    buffer.putAttributeHeader(StunAttributeType.MessageIntegrity, valueSize)
+                    buffer.put(hmac.output)
+                }
+                is StunAttribute.ErrorCode -> throw IllegalArgumentException("ErrorCode encoding not implemented.")
+                is StunAttribute.UnknownAttributes -> throw IllegalArgumentException("UnknownAttributes encoding not implemented.")
+                is StunAttribute.ChannelNumber -> {
+                    buffer.putAttributeHeader(StunAttributeType.ChannelNumber, valueSize)
+                    buffer.putInt(attr.number.toInt().shl(16))
+                }
+                is StunAttribute.Lifetime -> {
+                    buffer.putAttributeHeader(StunAttributeType.Lifetime, valueSize)
+                    buffer.putInt(attr.seconds.toInt())
+                }
+                is StunAttribute.XorPeerAddress -> {
+                    buffer.putAttributeHeader(StunAttributeType.XorPeerAddress, valueSize)
+                    buffer.putXorAddress(attr.address)
+                }
+                is StunAttribute.Data -> {
+                    buffer.putAttributeHeader(StunAttributeType.Data, valueSize)
+                    buffer.put(attr.bytes)
+                }
+                is StunAttribute.XorRelayedAddress -> {
+                    buffer.putAttributeHeader(StunAttributeType.XorRelayedAddress, valueSize)
+                    buffer.putXorAddress(attr.address)
+                }
+                is StunAttribute.RequestedTransport -> {
+                    buffer.putAttributeHeader(StunAttributeType.RequestedTransport, valueSize)
+                    buffer.putInt(17/*UDP*/ shl 24)
+                }
+                is StunAttribute.Priority -> {
+                    buffer.putAttributeHeader(StunAttributeType.Priority, valueSize)
+                    buffer.putInt(attr.value)
+                }
+                is StunAttribute.UseCandidate -> {
+                    buffer.putAttributeHeader(StunAttributeType.UseCandidate, valueSize)
+                }
+                is StunAttribute.Software -> {
+                    buffer.putAttributeHeader(StunAttributeType.Software, valueSize)
+                    buffer.putUtf8(attr.value)
+                }
+                is StunAttribute.TransactionTransmitCounter -> {
+                    buffer.putAttributeHeader(StunAttributeType.TransactionTransmitCounter, valueSize)
+                    buffer.putShort(0)
+                    buffer.put(attr.request.toByte())
+                    buffer.put(attr.response.toByte())
+                }
+                is StunAttribute.IceControlling -> {
+                    buffer.putAttributeHeader(StunAttributeType.IceControlling, valueSize)
+                    buffer.putLong(attr.tiebreaker.toLong())
+                }
+                is StunAttribute.IceControlled -> {
+                    buffer.putAttributeHeader(StunAttributeType.IceControlled, valueSize)
+                    buffer.putLong(attr.tiebreaker.toLong())
+                }
             }
+            buffer.putPadding(valueSize)
         }
 
-        // And finally, the true length
-        bytes[2] = attrsLength.shr(8).toByte()
-        bytes[3] = attrsLength.toByte()
+        // And finally, the true length (MessageIntegrity handling might have overwritten it)
+        buffer.putShort(start + 2, attrsLength.toShort())
+    }
 
-        return bytes
+    private fun encodedValueSize(attr: StunAttribute): Int = when (attr) {
+        is StunAttribute.MappedAddress -> throw IllegalArgumentException("MappedAddress encoding not implemented.")
+        is StunAttribute.XorMappedAddress -> encodedAddressSize(attr.address)
+        is StunAttribute.Username -> attr.username.utf8Size()
+        is StunAttribute.MessageIntegrity -> 20
+        is StunAttribute.ErrorCode -> throw IllegalArgumentException("ErrorCode encoding not implemented.")
+        is StunAttribute.UnknownAttributes -> throw IllegalArgumentException("UnknownAttributes encoding not implemented.")
+        is StunAttribute.ChannelNumber -> 4
+        is StunAttribute.Lifetime -> 4
+        is StunAttribute.XorPeerAddress -> encodedAddressSize(attr.address)
+        is StunAttribute.Data -> attr.bytes.size
+        is StunAttribute.XorRelayedAddress -> encodedAddressSize(attr.address)
+        is StunAttribute.RequestedTransport -> 4
+        is StunAttribute.Priority -> 4
+        is StunAttribute.UseCandidate -> 0
+        is StunAttribute.Software -> attr.value.utf8Size()
+        is StunAttribute.TransactionTransmitCounter -> 4
+        is StunAttribute.IceControlling -> 8
+        is StunAttribute.IceControlled -> 8
+    }
+
+    private fun encodedAddressSize(address: InetSocketAddress): Int = when (address.address) {
+        is Inet4Address -> 4 + 4
+        is Inet6Address -> 4 + 16
+        else -> throw IOException("Unknown address family ${address.address}")
+    }
+
+    private fun ByteBuffer.putXorAddress(address: InetSocketAddress) {
+        val family = when (address.address) {
+            is Inet4Address -> 1
+            is Inet6Address -> 2
+            else -> throw IOException("Unknown address family ${address.address}")
+        }
+        put(0.toByte())
+        put(family.toByte())
+        putShort((address.port xor MAGIC_COOKIE_INT.ushr(16)).toShort())
+        val addressBytes = address.address.address
+        val tId = transactionId.bytes
+        for (i in addressBytes.indices) {
+            val mask = if (i < 4) MAGIC_COOKIE[i] else tId[i - 4]
+            put(addressBytes[i].xor(mask))
+        }
     }
 
     companion object {
         private val SOFTWARE = "essential.gg v${VersionInfo().essentialVersion}"
+        private val SOFTWARE_BYTES = SOFTWARE.encodeToByteArray()
         private const val HEADER_SIZE = 20
         private val MAGIC_COOKIE = byteArrayOf(0x21, 0x12, 0xA4.toByte(), 0x42)
+        private const val MAGIC_COOKIE_INT = 0x2112A442
+
+        private val HMAC = ThreadLocal.withInitial { HmacSha1() }
+
+        /** A per-thread [Mac] instance, so we don't need to look one up and initialize it for every single message. */
+        private class HmacSha1 {
+            private val mac = Mac.getInstance("HmacSHA1")
+            private var key: ByteArray? = null
+            val output = ByteArray(20)
+
+            fun init(key: ByteArray): Mac {
+                if (!key.contentEquals(this.key)) {
+                    mac.init(SecretKeySpec(key, "HmacSHA1"))
+                    this.key = key.copyOf()
+                } else {
+                    // In case a previous use was aborted half-way
+                    mac.reset()
+                }
+                return mac
+            }
+        }
 
         fun looksLikeStun(bytes: ByteArray): Boolean {
             if (bytes.size < HEADER_SIZE) return false
@@ -179,7 +259,7 @@ data class StunMessage(
             // Message length is always aligned to multiples of 4 bytes
             if (bytes[3].toInt() and 0b00000011 != 0) return false
             // Magic cookie
-            if (!bytes.sliceArray(4 until 8).contentEquals(MAGIC_COOKIE)) return false
+            if (!hasMagicCookie(bytes)) return false
             // Certainly looks like STUN
             return true
         }
@@ -213,9 +293,8 @@ data class StunMessage(
                 throw IOException("Invalid message length, was $length but only ${bytes.size - HEADER_SIZE} bytes remain.")
             }
 
-            val cookie = bytes.sliceArray(4 until 8)
-            if (!cookie.contentEquals(MAGIC_COOKIE)) {
-                throw IOException("Invalid magic cookie value ${cookie.contentToString()}")
+            if (!hasMagicCookie(bytes)) {
+                throw IOException("Invalid magic cookie value ${bytes.sliceArray(4 until 8).contentToString()}")
             }
 
             val transactionId = bytes.sliceArray(8 until 20)
@@ -281,11 +360,8 @@ data class StunMessage(
                     StunAttributeType.MessageIntegrity -> {
                         // The input to the HMAC is the content up to and including the **preceding** attribute
                         val verifiedLength = offset - 4
-                        val verifiedBytes = bytes.sliceArray(0 until verifiedLength)
                         // The stored message length however includes the MessageIntegrity attribute
                         val storedLength = offset + 20
-                        verifiedBytes[2] = (storedLength - HEADER_SIZE).shr(8).toByte()
-                        verifiedBytes[3] = (storedLength - HEADER_SIZE).toByte()
 
                         val key = if (msgClass.isResponse) {
                             getClientKey(TransactionId(transactionId))
@@ -298,12 +374,20 @@ data class StunMessage(
                             attributes.add(StunAttribute.MessageIntegrity(null))
                             break
                         }
-                        val mac = Mac.getInstance("HmacSHA1")
-                        mac.init(SecretKeySpec(key, "HmacSHA1"))
-                        mac.update(verifiedBytes)
-                        val hmac = mac.doFinal()
-                        if (!hmac.contentEquals(bytes.sliceArray(offset until offset + 20))) {
-                            throw IOException("Invalid HMAC")
+                        if (attrLength != 20 || offset + 20 > bytes.size) {
+                            throw IOException("Invalid MESSAGE-INTEGRITY length $attrLength")
+                        }
+                        val hmac = HMAC.get()
+                        val mac = hmac.init(key)
+                        mac.update(bytes, 0, 2)
+                        mac.update((storedLength - HEADER_SIZE).shr(8).toByte())
+                        mac.update((storedLength - HEADER_SIZE).toByte())
+                        mac.update(bytes, 4, verifiedLength - 4)
+                        mac.doFinal(hmac.output, 0)
+                        for (i in 0 until 20) {
+                            if (hmac.output[i] != bytes[offset + i]) {
+                                throw IOException("Invalid HMAC")
+                            }
                         }
                         attributes.add(StunAttribute.MessageIntegrity(key))
                         break // ignore everything after this attribute (we don't support FINGERPRINT)
@@ -359,6 +443,61 @@ data class StunMessage(
             return StunMessage(msgType, msgClass, TransactionId(transactionId), attributes)
         }
 
+        /**
+         * Returns the class of the STUN message in [bytes], which must [looksLikeStun], without decoding the rest.
+         * Allows cheaply discarding messages which we are not interested in before paying for a full [decode].
+         */
+        fun peekClass(bytes: ByteArray): StunClass {
+            val typeAndClass = bytes[0].toUByte().toInt()
+                .shl(8).or(bytes[1].toUByte().toInt())
+            return StunClass.entries[(typeAndClass and 0b100000000 shr 7) or (typeAndClass and 0b10000 shr 4)]
+        }
+
+        /** Returns the transaction id of the STUN message in [bytes], which must [looksLikeStun]. */
+        fun peekTransactionId(bytes: ByteArray): TransactionId =
+            TransactionId(bytes.sliceArray(8 until 20))
+
+        private fun hasMagicCookie(bytes: ByteArray): Boolean =
+            bytes[4] == MAGIC_COOKIE[0] && bytes[5] == MAGIC_COOKIE[1]
+                && bytes[6] == MAGIC_COOKIE[2] && bytes[7] == MAGIC_COOKIE[3]
+
+        private fun ByteBuffer.putAttributeHeader(type: StunAttributeType, length: Int) {
+            putShort(type.id.toShort())
+            putShort(length.toShort())
+        }
+
+        private fun ByteBuffer.putPadding(length: Int) {
+            for (i in length until length.padToMultipleOf(4)) {
+                put(0.toByte())
+            }
+        }
+
+        private fun ByteBuffer.putUtf8(str: String) {
+            if (str.all { it.code < 0x80 }) {
+                for (c in str) {
+                    put(c.code.toByte())
+                }
+            } else {
+                put(str.encodeToByteArray())
+            }
+        }
+
+        private fun String.utf8Size(): Int {
+            var size = 0
+            var i = 0
+            while (i < length) {
+                val c = this[i]
+                size += when {
+                    c.code < 0x80 -> 1
+                    c.code < 0x800 -> 2
+                    c.isHighSurrogate() && i + 1 < length && this[i + 1].isLowSurrogate() -> { i++; 4 }
+                    else -> 3
+                }
+                i++
+            }
+            return size
+        }
+
         private fun Int.padToMultipleOf(multipleOf: Int): Int =
             (this + multipleOf - 1) / multipleOf * multipleOf
     }
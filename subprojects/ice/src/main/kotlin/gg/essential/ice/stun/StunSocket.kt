@@ -20,6 +20,7 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.CoroutineStart
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.awaitCancellation
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.channels.BufferOverflow
 import kotlinx.coroutines.channels.Channel
@@ -34,27 +35,36 @@ import org.slf4j.Logger
 import java.io.IOException
 import java.net.BindException
 import java.net.DatagramPacket
-import java.net.DatagramSocket
 import java.net.InetAddress
 import java.net.InetSocketAddress
 import java.net.NoRouteToHostException
 import java.net.SocketException
+import java.nio.ByteBuffer
+import java.nio.channels.CancelledKeyException
+import java.nio.channels.DatagramChannel
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
 import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.coroutineContext
 import kotlin.time.ComparableTimeMark
 import kotlin.time.Duration
 import kotlin.time.Duration.Companion.minutes
 import kotlin.time.Duration.Companion.seconds
+import kotlin.time.DurationUnit
 import kotlin.time.TimeSource
 
 /**
- * This class extends a local DatagramSocket with [STUN](https://www.rfc-editor.org/rfc/rfc8489) and
+ * This class extends a local DatagramChannel with [STUN](https://www.rfc-editor.org/rfc/rfc8489) and
  * [TURN](https://www.rfc-editor.org/rfc/rfc8656) functionality.
  */
 class StunSocket(
     parentLogger: Logger,
     parentScope: CoroutineScope, // must have Job and a concurrency-limited "main" dispatcher
     private val manager: StunManager,
-    private val hostSocket: DatagramSocket,
+    private val hostChannel: DatagramChannel,
     val hostAddress: InetSocketAddress,
 ) {
     val scope = parentScope + Job(parentScope.coroutineContext.job)
@@ -79,9 +89,14 @@ class StunSocket(
         }
     }
 
+    /** Statistics of the underlying host socket, i.e. not including any packets sent via TURN channels/indications. */
+    val statistics = Statistics()
+    private val openedAt = statistics.snapshot()
+
     private val hostSendChannel: Channel<Pair<DatagramPacket, CompletableDeferred<Boolean>?>> =
         Channel(1000, BufferOverflow.DROP_OLDEST) { (packet, deferred) ->
             logger.warn("Failed to send packet of {} bytes to {}: hostSendChannel overflow", packet.length, packet.address)
+            statistics.sendDropped.incrementAndGet()
             // On  overflow, we resolve the deferred as successful because overflow is not unrecoverable (just re-try)
             deferred?.complete(true)
         }
@@ -90,86 +105,44 @@ class StunSocket(
     private val stunBindings = mutableMapOf<InetSocketAddress, StunBinding>()
     private val relayAllocations = mutableMapOf<InetSocketAddress, RelayAllocation>()
 
+    private val networkConditions = NetworkConditions.forNextSocket()
+
+    private val selector: Selector = Selector.open()
+    private val wakeupRequested = AtomicBoolean(false)
+
     init {
+        val packetsToBeSorted = Channel<ReceivedPacket>(RECEIVE_QUEUE_SIZE)
+
         hostSocketScope.launch(Dispatchers.IO, CoroutineStart.UNDISPATCHED) {
             // We want CoroutineStart.ATOMIC so our finally is guaranteed, but that's still experimental, so we'll
             // instead use UNDISPATCHED and yield as soon as we're inside our try-finally.
-            hostSocket.use { socket ->
-                yield()
-                val sha256 = MessageDigest.getInstance("SHA-256")
-                val knownUnreachable = mutableSetOf<InetAddress>()
-                for ((packet, deferred) in hostSendChannel) {
-                    if (packet.address in knownUnreachable) {
-                        deferred?.complete(false)
-                        continue // don't even bother trying
-                    }
-                    try {
-                        if (LOG_UDP_PACKET_CONTENT) {
-                            val bytes = packet.data.maybeSliceArray(packet.offset, packet.length)
-                            val checksum = sha256.digest(bytes).toBase64String()
-                            val content = bytes.toBase64String()
-                            logger.atTrace()
-                                .addKeyValue("hostAddress", hostAddress)
-                                .addKeyValue("remoteAddress", packet.socketAddress)
-                                .log("Sending packet of {} bytes with checksum {}: {}", bytes.size, checksum, content)
+            try {
+                hostChannel.use { channel ->
+                    selector.use { selector ->
+                        yield()
+
+                        // The selector does not know about coroutine cancellation, so we need to explicitly wake it.
+                        // Started undispatched so the finally is guaranteed to be registered before we ever select.
+                        val wakeupOnCancel = launch(start = CoroutineStart.UNDISPATCHED) {
+                            try {
+                                awaitCancellation()
+                            } finally {
+                                selector.wakeup()
+                            }
                         }
-                        socket.send(packet)
-                    } catch (e: Exception) {
-                        if (e is SocketException && e.message?.startsWith("Network is unreachable:") == true
-                            || e is BindException && e.message == "Cannot assign requested address: no further information"
-                            || e is IOException && e.message == "Network is unreachable (sendto failed)"
-                            || e is NoRouteToHostException) {
-                            logger.trace("Failed to send to {}: {}", packet.socketAddress, e.message)
-                            knownUnreachable.add(packet.address)
-                            deferred?.complete(false)
-                            continue
+                        try {
+                            channel.configureBlocking(false)
+                            val key = channel.register(selector, SelectionKey.OP_READ)
+                            HostChannelLoop(channel, key, packetsToBeSorted).run()
+                        } finally {
+                            wakeupOnCancel.cancel()
                         }
-                        logger.error("Failed to send $packet to ${packet.socketAddress}", e)
-                    } finally {
-                        deferred?.complete(true)
-                    }
-                }
-            }
-        }
-
-        val packetsToBeSorted = Channel<ReceivedPacket>(10)
-        hostSocketScope.launch(Dispatchers.IO) {
-            val sha256 = MessageDigest.getInstance("SHA-256")
-            val buf = DatagramPacket(ByteArray(1500), 1500)
-            while (coroutineContext.isActive) {
-                try {
-                    hostSocket.receive(buf)
-                } catch (e: Exception) {
-                    if (e is SocketException && e.message?.startsWith("Network dropped connection on reset") == true) {
-                        logger.trace("Ignoring nonsensical exception:", e)
-                        continue
-                    }
-                    if (!hostSocket.isClosed) {
-                        logger.error("Failed to receive:", e)
                     }
-                    break
-                }
-                val remoteAddress = InetSocketAddress(buf.address, buf.port)
-                val bytes = buf.data.sliceArray(buf.offset until buf.offset + buf.length)
-                if (LOG_UDP_PACKET_CONTENT) {
-                    val checksum = sha256.digest(bytes).toBase64String()
-                    val content = bytes.toBase64String()
-                    logger.atTrace()
-                        .addKeyValue("hostAddress", hostAddress)
-                        .addKeyValue("remoteAddress", remoteAddress)
-                        .log("Received packet of {} bytes with checksum {}: {}", bytes.size, checksum, content)
                 }
-                packetsToBeSorted.send(
-                    ReceivedPacket(
-                        this@StunSocket,
-                        null,
-                        TimeSource.Monotonic.markNow(),
-                        remoteAddress,
-                        bytes,
-                    )
-                )
+            } finally {
+                packetsToBeSorted.close()
+                logStatistics()
             }
-            packetsToBeSorted.close()
         }
 
         hostSocketScope.launch {
@@ -214,12 +187,188 @@ class StunSocket(
      */
     suspend fun send(packet: DatagramPacket): Boolean {
         val deferred = CompletableDeferred<Boolean>()
-        hostSendChannel.send(packet to deferred)
+        enqueue(packet to deferred)
         return deferred.await()
     }
 
     fun sendUnchecked(packet: DatagramPacket) {
-        hostSendChannel.trySend(packet to null)
+        enqueue(packet to null)
+    }
+
+    private fun enqueue(entry: Pair<DatagramPacket, CompletableDeferred<Boolean>?>) {
+        val conditions = networkConditions
+        if (conditions != null) {
+            val delay = conditions.nextPacket()
+            if (delay == null) {
+                // Lost somewhere on the way, as far as the sender can tell, it was sent successfully
+                entry.second?.complete(true)
+                return
+            }
+            if (delay > Duration.ZERO) {
+                hostSocketScope.launch {
+                    delay(delay)
+                    hostSendChannel.trySend(entry)
+                    wakeupHostChannelLoop()
+                }
+                return
+            }
+        }
+
+        // Never suspends, the channel drops the oldest packets on overflow
+        hostSendChannel.trySend(entry)
+        wakeupHostChannelLoop()
+    }
+
+    private fun wakeupHostChannelLoop() {
+        // Waking up the selector is a syscall, so if multiple packets are queued before the loop gets around to
+        // sending them, we only want to wake it once.
+        if (wakeupRequested.compareAndSet(false, true)) {
+            selector.wakeup()
+        }
+    }
+
+    /**
+     * Drives all I/O on the host socket from a single thread.
+     *
+     * Whenever the selector wakes up, all datagrams which are ready are received (up to [RECEIVE_BATCH_SIZE], so
+     * sending cannot be starved), and then as many queued packets as the socket buffer can take are sent, so bursts of
+     * packets only cost a single wakeup rather than one per packet.
+     */
+    private inner class HostChannelLoop(
+        private val channel: DatagramChannel,
+        private val key: SelectionKey,
+        private val packetsToBeSorted: Channel<ReceivedPacket>,
+    ) {
+        private val sha256 = MessageDigest.getInstance("SHA-256")
+        private val knownUnreachable = mutableSetOf<InetAddress>()
+        private val receiveBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE)
+
+        /** A packet which could not be sent yet because the socket buffer was full. */
+        private var pendingSend: Pair<DatagramPacket, CompletableDeferred<Boolean>?>? = null
+
+        suspend fun run() {
+            var receiving = true
+            while (coroutineContext.isActive) {
+                if (receiving && !receive()) {
+                    packetsToBeSorted.close()
+                    if (!channel.isOpen) {
+                        break // nothing left we could do with it
+                    }
+                    // Can't receive any more but we may still be able to send (e.g. to release TURN allocations)
+                    receiving = false
+                }
+
+                // Reset before we check the queue, so anything queued after this point will wake up the selector again
+                wakeupRequested.set(false)
+                val flushed = flush()
+                // The key is cancelled once the channel has been closed, there is nothing left to select for then
+                if (!key.isValid) {
+                    break
+                }
+                try {
+                    key.interestOps(
+                        (if (receiving) SelectionKey.OP_READ else 0) or (if (flushed) 0 else SelectionKey.OP_WRITE)
+                    )
+                } catch (e: CancelledKeyException) {
+                    break // closed concurrently
+                }
+
+                selector.select()
+                selector.selectedKeys().clear()
+            }
+
+            pendingSend?.second?.complete(true)
+        }
+
+        /**
+         * Receives all datagrams which are currently available.
+         * Returns `false` if the socket is no longer usable.
+         */
+        private fun receive(): Boolean {
+            for (i in 0 until RECEIVE_BATCH_SIZE) {
+                receiveBuffer.clear()
+                val source = try {
+                    channel.receive(receiveBuffer) ?: return true
+                } catch (e: Exception) {
+                    if (e is SocketException && e.message?.startsWith("Network dropped connection on reset") == true) {
+                        logger.trace("Ignoring nonsensical exception:", e)
+                        continue
+                    }
+                    if (channel.isOpen) {
+                        logger.error("Failed to receive:", e)
+                    }
+                    return false
+                }
+                receiveBuffer.flip()
+
+                val remoteAddress = source as InetSocketAddress
+                val bytes = ByteArray(receiveBuffer.remaining())
+                receiveBuffer.get(bytes)
+                if (LOG_UDP_PACKET_CONTENT) {
+                    val checksum = sha256.digest(bytes).toBase64String()
+                    val content = bytes.toBase64String()
+                    logger.atTrace()
+                        .addKeyValue("hostAddress", hostAddress)
+                        .addKeyValue("remoteAddress", remoteAddress)
+                        .log("Received packet of {} bytes with checksum {}: {}", bytes.size, checksum, content)
+                }
+
+                statistics.received.incrementAndGet()
+                val packet = ReceivedPacket(this@StunSocket, null, TimeSource.Monotonic.markNow(), remoteAddress, bytes)
+                // If we can't keep up, we'll drop packets, just like the OS would if we didn't read them fast enough.
+                if (packetsToBeSorted.trySend(packet).isFailure) {
+                    statistics.receiveDropped.incrementAndGet()
+                }
+            }
+            return true
+        }
+
+        /**
+         * Sends as many queued packets as possible.
+         * Returns `true` if the queue has been fully flushed, `false` if the socket buffer is full.
+         */
+        private fun flush(): Boolean {
+            while (true) {
+                val entry = pendingSend ?: hostSendChannel.tryReceive().getOrNull() ?: return true
+                pendingSend = null
+                val (packet, deferred) = entry
+
+                if (packet.address in knownUnreachable) {
+                    statistics.sendDropped.incrementAndGet()
+                    deferred?.complete(false)
+                    continue // don't even bother trying
+                }
+                try {
+                    if (LOG_UDP_PACKET_CONTENT) {
+                        val bytes = packet.data.maybeSliceArray(packet.offset, packet.length)
+                        val checksum = sha256.digest(bytes).toBase64String()
+                        val content = bytes.toBase64String()
+                        logger.atTrace()
+                            .addKeyValue("hostAddress", hostAddress)
+                            .addKeyValue("remoteAddress", packet.socketAddress)
+                            .log("Sending packet of {} bytes with checksum {}: {}", bytes.size, checksum, content)
+                    }
+                    if (channel.send(ByteBuffer.wrap(packet.data, packet.offset, packet.length), packet.socketAddress) == 0) {
+                        pendingSend = entry
+                        return false
+                    }
+                    statistics.sent.incrementAndGet()
+                } catch (e: Exception) {
+                    statistics.sendDropped.incrementAndGet()
+                    if (e is SocketException && e.message?.startsWith("Network is unreachable:") == true
+                        || e is BindException && e.message == "Cannot assign requested address: no further information"
+                        || e is IOException && e.message == "Network is unreachable (sendto failed)"
+                        || e is NoRouteToHostException) {
+                        logger.trace("Failed to send to {}: {}", packet.socketAddress, e.message)
+                        knownUnreachable.add(packet.address)
+                        deferred?.complete(false)
+                        continue
+                    }
+                    logger.error("Failed to send $packet to ${packet.socketAddress}", e)
+                }
+                deferred?.complete(true)
+            }
+        }
     }
 
     fun getEndpoint(address: InetSocketAddress): Endpoint {
@@ -245,6 +394,86 @@ class StunSocket(
         }
     }
 
+    private fun logStatistics() {
+        val totals = statistics.snapshot()
+        val rates = totals.ratesSince(openedAt)
+        logger.atInfo()
+            .addKeyValue("duration", totals.timestamp - openedAt.timestamp)
+            .log(
+                "Host socket closed. Received {} packets ({}/s, {} dropped), sent {} packets ({}/s, {} dropped).",
+                totals.received, rates.received, totals.receiveDropped,
+                totals.sent, rates.sent, totals.sendDropped,
+            )
+    }
+
+    /**
+     * Counters for the traffic on a [StunSocket]. All counters are totals since the socket was opened, use
+     * [snapshot] and [Snapshot.ratesSince] to get per-second rates.
+     */
+    class Statistics {
+        internal val received = AtomicLong()
+        internal val receiveDropped = AtomicLong()
+        internal val sent = AtomicLong()
+        internal val sendDropped = AtomicLong()
+
+        fun snapshot() = Snapshot(
+            TimeSource.Monotonic.markNow(),
+            received.get(),
+            receiveDropped.get(),
+            sent.get(),
+            sendDropped.get(),
+        )
+
+        data class Snapshot(
+            val timestamp: ComparableTimeMark,
+            /** Packets received and passed on for processing. */
+            val received: Long,
+            /** Packets received but dropped because processing could not keep up. */
+            val receiveDropped: Long,
+            /** Packets successfully handed to the OS. */
+            val sent: Long,
+            /** Packets not sent due to queue overflow, unreachable destination or some other error. */
+            val sendDropped: Long,
+        ) {
+            /** Returns the average number of packets per second between [previous] and this snapshot. */
+            fun ratesSince(previous: Snapshot): Snapshot {
+                val seconds = (timestamp - previous.timestamp).toDouble(DurationUnit.SECONDS).coerceAtLeast(0.001)
+                fun rate(now: Long, before: Long) = ((now - before) / seconds).toLong()
+                return Snapshot(
+                    timestamp,
+                    rate(received, previous.received),
+                    rate(receiveDropped, previous.receiveDropped),
+                    rate(sent, previous.sent),
+                    rate(sendDropped, previous.sendDropped),
+                )
+            }
+        }
+    }
+
+    /**
+     * Counters for the data relayed via a [RelayAllocation].
+     * A high share of indications (as opposed to channel data) or queue drops hint at a poor relayed connection.
+     */
+    class RelayStatistics {
+        internal val queued = AtomicInteger()
+        internal val queueDropped = AtomicLong()
+        internal val channelDataSent = AtomicLong()
+        internal val indicationsSent = AtomicLong()
+        internal val channelDataReceived = AtomicLong()
+        internal val indicationsReceived = AtomicLong()
+
+        /** Number of packets currently waiting to be sent (i.e. not using the fast path). */
+        val queueSize: Int get() = queued.get()
+        /** Number of packets which were dropped because the queue overflowed. */
+        val queueDroppedTotal: Long get() = queueDropped.get()
+        /** Number of packets sent as ChannelData, i.e. with only 4 bytes of overhead. */
+        val channelDataSentTotal: Long get() = channelDataSent.get()
+        /** Number of packets sent as STUN Send indications, i.e. with 36 or more bytes of overhead. */
+        val indicationsSentTotal: Long get() = indicationsSent.get()
+        val channelDataReceivedTotal: Long get() = channelDataReceived.get()
+        val indicationsReceivedTotal: Long get() = indicationsReceived.get()
+    }
+
     class ReceivedPacket(
         val socket: StunSocket,
         val relay: RelayAllocation?,
@@ -325,7 +554,13 @@ class StunSocket(
         val logger = this@StunSocket.logger.withKeyValue("turnServer", endpoint.address)
         val scope = this@StunSocket.scope.let { it + Job(it.coroutineContext.job) }
 
-        val sendChannel = Channel<DatagramPacket>(100, BufferOverflow.DROP_OLDEST)
+        val statistics = RelayStatistics()
+
+        private val sendChannel = Channel<DatagramPacket>(RELAY_QUEUE_SIZE, BufferOverflow.DROP_OLDEST) { packet ->
+            logger.trace("Relay send queue overflow, dropping packet of {} bytes", packet.length)
+            statistics.queued.decrementAndGet()
+            statistics.queueDropped.incrementAndGet()
+        }
 
         val mappedAddress = CompletableDeferred<InetSocketAddress>(scope.coroutineContext.job)
         val relayedAddress = CompletableDeferred<InetSocketAddress>(scope.coroutineContext.job)
@@ -343,16 +578,27 @@ class StunSocket(
                         release()
                     }
                     scope.cancel()
+                    logStatistics()
                 }
             }
 
             scope.launch {
                 for (packet in sendChannel) {
+                    statistics.queued.decrementAndGet()
                     sendData(packet)
                 }
             }
         }
 
+        private fun logStatistics() {
+            logger.info(
+                "Relay allocation ended. Sent {} ChannelData and {} indications ({} dropped from queue), " +
+                    "received {} ChannelData and {} indications.",
+                statistics.channelDataSentTotal, statistics.indicationsSentTotal, statistics.queueDroppedTotal,
+                statistics.channelDataReceivedTotal, statistics.indicationsReceivedTotal,
+            )
+        }
+
         private suspend fun allocateAndHold() {
             val allocResponse = endpoint.request(StunType.Allocate, StunAttribute.RequestedTransport)?.message
             if (allocResponse == null) {
@@ -496,13 +742,36 @@ class StunSocket(
             //       time elapses, so we don't need to bother refreshing them.
         }
 
+        /**
+         * Sends the given packet to its destination via the TURN server.
+         * Must be called from the socket's main dispatcher.
+         */
+        fun send(packet: DatagramPacket) {
+            // Fast path: Once a channel is bound, which is the case for the selected pair after a few RTTs, the packet
+            // can be framed and handed to the socket right away without going through the queue.
+            val channelId = channelAddressToId[packet.socketAddress]
+            if (channelId != null && channelId in boundChannels) {
+                sendChannelData(channelId, packet)
+                return
+            }
+
+            if (sendChannel.trySend(packet).isSuccess) {
+                statistics.queued.incrementAndGet()
+            }
+        }
+
+        private fun sendChannelData(channelId: UShort, packet: DatagramPacket) {
+            val data = ChannelData.encode(channelId, packet.data, packet.offset, packet.length)
+            this@StunSocket.sendUnchecked(DatagramPacket(data, endpoint.address))
+            statistics.channelDataSent.incrementAndGet()
+        }
+
         private fun sendData(packet: DatagramPacket) {
             val destination = InetSocketAddress(packet.address, packet.port)
 
             val channelId = channelAddressToId[packet.socketAddress]
             if (channelId != null && channelId in boundChannels) {
-                val data = ChannelData.encode(channelId, packet.data.maybeSliceArray(packet.offset, packet.length))
-                this@StunSocket.sendUnchecked(DatagramPacket(data, endpoint.address))
+                sendChannelData(channelId, packet)
                 return
             }
 
@@ -513,6 +782,7 @@ class StunSocket(
                 StunAttribute.Data(packet.data.maybeSliceArray(packet.offset, packet.length)),
             ))
             this@StunSocket.sendUnchecked(DatagramPacket(msg.encode(), endpoint.address))
+            statistics.indicationsSent.incrementAndGet()
         }
 
         internal suspend fun dataPacketReceived(packet: ReceivedPacket): Boolean {
@@ -528,6 +798,7 @@ class StunSocket(
                 return true
             }
             
+            statistics.channelDataReceived.incrementAndGet()
             relayedPacketReceived(ReceivedPacket(this@StunSocket, this, packet.timestamp, peerAddress, channelData.data))
             return true
         }
@@ -560,6 +831,7 @@ class StunSocket(
 
             logger.trace("Received STUN Data indication from peer {} with {} bytes of data.", peerAddress, data.bytes.size)
 
+            statistics.indicationsReceived.incrementAndGet()
             relayedPacketReceived(ReceivedPacket(this@StunSocket, this, packet.timestamp, peerAddress, data.bytes))
         }
 
@@ -586,6 +858,14 @@ class StunSocket(
     companion object {
         private val LOG_UDP_PACKET_CONTENT = System.getProperty("essential.sps.log_udp_packet_content").toBoolean()
 
+        /** Large enough for any packet which fits into a typical Ethernet frame, larger ones are truncated. */
+        private const val RECEIVE_BUFFER_SIZE = 1500
+        /** Maximum number of packets received per wakeup before giving queued outgoing packets a turn. */
+        private const val RECEIVE_BATCH_SIZE = 64
+        private const val RECEIVE_QUEUE_SIZE = 256
+        /** Packets which do not yet have a bound channel. Matches the host socket's queue, so we don't drop any earlier. */
+        private const val RELAY_QUEUE_SIZE = 1000
+
         private fun ByteArray.maybeSliceArray(offset: Int, length: Int) =
             if (offset == 0 && length == size) this else sliceArray(offset until offset + length)
     }
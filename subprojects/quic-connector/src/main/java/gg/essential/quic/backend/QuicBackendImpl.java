@@ -45,6 +45,7 @@ import io.netty.incubator.codec.quic.QuicServerCodecBuilder;
 import io.netty.incubator.codec.quic.QuicSslContext;
 import io.netty.incubator.codec.quic.QuicSslContextBuilder;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamPriority;
 import io.netty.incubator.codec.quic.QuicStreamType;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
@@ -102,6 +103,12 @@ public class QuicBackendImpl implements QuicBackend {
         .initialMaxStreamsBidirectional(10)
         ;
 
+    // The MC connection is latency sensitive, so whenever it has data to send, that should go out first.
+    // Everything else (i.e. resource pack downloads via the http proxy) is bulk traffic and shares whatever is left.
+    // Note: Urgency ranges from 0 (most urgent) to 7, with 3 being the default.
+    private static final QuicStreamPriority MC_STREAM_PRIORITY = new QuicStreamPriority(0, false);
+    private static final QuicStreamPriority BULK_STREAM_PRIORITY = new QuicStreamPriority(6, true);
+
     // Arbitrary addresses we can pass to netty's QUIC codec
     private static final InetSocketAddress QUIC_LOCAL_ADDRESS = new InetSocketAddress("172.16.10.10", 10000);
     private static final InetSocketAddress QUIC_REMOTE_ADDRESS = new InetSocketAddress("172.16.10.10", 10001);
@@ -188,6 +195,7 @@ public class QuicBackendImpl implements QuicBackend {
                     }
 
                     streamChannel = streamChannelFuture.getNow();
+                    updatePriority(streamChannel, MC_STREAM_PRIORITY);
 
                     listener.onOpen();
                 });
@@ -239,6 +247,7 @@ public class QuicBackendImpl implements QuicBackend {
                     if (waitingForInitialChannel) {
                         waitingForInitialChannel = false;
                         streamChannel = ch;
+                        updatePriority(ch, MC_STREAM_PRIORITY);
 
                         ch.pipeline().addLast(new McProxyHandler(listener) {
                             @Override
@@ -247,6 +256,7 @@ public class QuicBackendImpl implements QuicBackend {
                             }
                         });
                     } else {
+                        updatePriority(ch, BULK_STREAM_PRIORITY);
                         // Delay reading until the tcp proxy is ready
                         ch.config().setAutoRead(false);
                         ch.pipeline().addLast(new TcpProxyFrontendHandler(LOCALHOST, httpPort));
@@ -279,6 +289,14 @@ public class QuicBackendImpl implements QuicBackend {
         }
     }
 
+    private void updatePriority(QuicStreamChannel channel, QuicStreamPriority priority) {
+        channel.updatePriority(priority).addListener(future -> {
+            if (!future.isSuccess()) {
+                logger.debug("Failed to update QUIC stream priority", future.cause());
+            }
+        });
+    }
+
     private void finishClose() {
         // Delay close actions by 1 second to allow for retransmits of the final CONNECTION_CLOSE frame
         eventLoop.schedule(() -> {
@@ -397,7 +415,9 @@ public class QuicBackendImpl implements QuicBackend {
                         return;
                     }
 
-                    targetChannel = streamChannelFuture.getNow();
+                    QuicStreamChannel streamChannel = streamChannelFuture.getNow();
+                    updatePriority(streamChannel, BULK_STREAM_PRIORITY);
+                    targetChannel = streamChannel;
 
                     // connection complete, begin reading data from frontend channel
                     if (tcpChannel.isActive()) {
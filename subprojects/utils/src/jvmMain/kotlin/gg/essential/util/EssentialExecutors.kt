@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.util
+
+/**
+ * The shared executors all of Essential's background work should run on, split into lanes by the kind of work, so e.g.
+ * a burst of image decoding cannot delay a network request, and so the total number of threads competing with
+ * Minecraft's own threads for the CPU stays bounded.
+ *
+ * Limits are derived from the number of available cores. Minecraft already keeps at least the client thread and its
+ * own worker pool busy, so CPU-bound work only gets half the cores.
+ */
+object EssentialExecutors {
+    private val cores = Runtime.getRuntime().availableProcessors()
+
+    /**
+     * For work which mostly waits on disk or network.
+     * Has a comparatively high limit because most of its tasks are blocked most of the time.
+     */
+    @JvmStatic
+    val io = LaneExecutor("IO", maxOf(16, cores * 2))
+
+    /**
+     * For network transfers which may keep their thread blocked for a long time (asset downloads, serving resource
+     * packs, etc.).
+     * Kept separate from [io] so a few large or slow transfers cannot occupy all of its threads and hold up the short
+     * requests queued behind them.
+     */
+    @JvmStatic
+    val transfer = LaneExecutor("Transfer", 16)
+
+    /** For work which keeps the CPU busy for its entire duration (decoding, resampling, parsing, etc.). */
+    @JvmStatic
+    val cpu = LaneExecutor("CPU", maxOf(1, cores / 2))
+
+    /**
+     * For short tasks where the user is actively waiting on the result (e.g. something needed for the next frame).
+     * Tasks on this lane must neither block nor run for long, otherwise they defeat its purpose.
+     */
+    @JvmStatic
+    val latencyCritical = LaneExecutor("Latency", maxOf(2, cores / 2))
+
+    @JvmStatic
+    fun snapshot(): List<LaneExecutor.Snapshot> = listOf(io, transfer, cpu, latencyCritical).map { it.snapshot() }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 ModCore Inc. All rights reserved.
+ *
+ * This code is part of ModCore Inc.'s Essential Mod repository and is protected
+ * under copyright registration # TX0009138511. For the full license, see:
+ * https://github.com/EssentialGG/Essential/blob/main/LICENSE
+ *
+ * You may not use, copy, reproduce, modify, sell, license, distribute,
+ * commercialize, or otherwise exploit, or create derivative works based
+ * upon, this file or any other in this repository, all of which is reserved by Essential.
+ */
+package gg.essential.util
+
+import java.util.concurrent.Executor
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * An executor which runs at most [parallelism] tasks at the same time, on its own set of (lazily started) threads.
+ * See [EssentialExecutors] for the instances which should be used.
+ *
+ * Queued tasks are run in order of their priority (higher first), tasks of equal priority in the order they were
+ * submitted. Tasks submitted without an explicit priority inherit the priority of the lane task which submits them (or
+ * [PRIORITY_NORMAL] if not submitted from a lane task), so follow-up work of an urgent task does not end up queued
+ * behind unrelated background work.
+ *
+ * Queue depth and how long tasks had to wait before they started running are recorded, see [snapshot].
+ */
+class LaneExecutor(val name: String, val parallelism: Int) : Executor {
+    private val sequence = AtomicLong()
+
+    private val submitted = AtomicLong()
+    private val completed = AtomicLong()
+    private val totalWaitNanos = AtomicLong()
+    private val maxWaitNanos = AtomicLong()
+    private val maxQueueDepth = AtomicInteger()
+
+    private val pool = object : ThreadPoolExecutor(
+        parallelism, parallelism,
+        30L, TimeUnit.SECONDS,
+        PriorityBlockingQueue(),
+        AtomicInteger().let { threadId ->
+            ThreadFactory { Thread(it, "Essential $name ${threadId.incrementAndGet()}").apply { isDaemon = true } }
+        },
+    ) {
+        override fun beforeExecute(t: Thread, r: Runnable) {
+            val task = r as Task
+            val waited = System.nanoTime() - task.queuedAt
+            totalWaitNanos.addAndGet(waited)
+            maxWaitNanos.accumulateAndGet(waited, ::maxOf)
+            currentLane.set(this@LaneExecutor)
+            currentPriority.set(task.priority)
+        }
+
+        override fun afterExecute(r: Runnable, t: Throwable?) {
+            currentPriority.remove()
+            currentLane.remove()
+            completed.incrementAndGet()
+        }
+    }.apply { allowCoreThreadTimeOut(true) }
+
+    override fun execute(command: Runnable) = execute(command, currentPriority.get())
+
+    fun execute(command: Runnable, priority: Int) {
+        submitted.incrementAndGet()
+        pool.execute(Task(command, priority, sequence.getAndIncrement(), System.nanoTime()))
+        maxQueueDepth.accumulateAndGet(pool.queue.size, ::maxOf)
+    }
+
+    fun submit(command: Runnable): Future<*> = FutureTask(command, null).also { execute(it) }
+
+    fun snapshot() = Snapshot(
+        name,
+        parallelism,
+        pool.activeCount,
+        pool.queue.size,
+        maxQueueDepth.get(),
+        submitted.get(),
+        completed.get(),
+        totalWaitNanos.get(),
+        maxWaitNanos.get(),
+    )
+
+    private class Task(
+        val command: Runnable,
+        val priority: Int,
+        val sequence: Long,
+        val queuedAt: Long,
+    ) : Runnable, Comparable<Task> {
+        override fun run() = command.run()
+
+        override fun compareTo(other: Task): Int =
+            if (priority != other.priority) other.priority.compareTo(priority) else sequence.compareTo(other.sequence)
+    }
+
+    data class Snapshot(
+        val name: String,
+        val parallelism: Int,
+        val active: Int,
+        val queueDepth: Int,
+        val maxQueueDepth: Int,
+        val submitted: Long,
+        val completed: Long,
+        /** Total time tasks spent queued before they started running. */
+        val totalWaitNanos: Long,
+        val maxWaitNanos: Long,
+    ) {
+        val averageWaitNanos: Long
+            get() = if (completed == 0L) 0 else totalWaitNanos / completed
+    }
+
+    companion object {
+        const val PRIORITY_LOW = -10
+        const val PRIORITY_NORMAL = 0
+        const val PRIORITY_HIGH = 10
+
+        private val currentLane = ThreadLocal<LaneExecutor?>()
+        private val currentPriority = ThreadLocal.withInitial { PRIORITY_NORMAL }
+
+        /** The lane whose task is running on the current thread, or `null` if the current thread is no lane thread. */
+        @JvmStatic
+        fun current(): LaneExecutor? = currentLane.get()
+    }
+}